@@ -17,4 +17,10 @@ public class BasicUser extends User {
     public void receive(String message, User sender) {
         System.out.println("  " + name + " received from " + sender.getName() + ": \"" + message + "\"");
     }
+    
+    @Override
+    public void receive(MessageBatch batch) {
+        System.out.println(" " + name + " catching up on " + batch.size() + " missed message(s)");
+        super.receive(batch);
+    }
 }
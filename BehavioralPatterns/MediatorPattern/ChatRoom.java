@@ -1,39 +1,191 @@
 package MediatorPattern;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ChatRoom implements ChatMediator {
-    private List<User> users;
+    public static final int DEFAULT_HISTORY_CAPACITY = 256;
+    private static final User[] NO_USERS = new User[0];
+    
+    private Membership users;
+    // Members without filters, split by delivery lane; everyone else is
+    // reached through the subscription index.
+    private final Membership[] unfiltered = { new Membership(), new Membership() };
+    private final SubscriptionIndex subscriptions = new SubscriptionIndex();
     private String roomName;
+    private boolean verbose;
+    private final MessageHistory history;
+    // Guards sequence assignment, history append and membership changes so a
+    // rejoining user's catch-up range lines up exactly with live delivery.
+    private final Object publishLock = new Object();
+    // In departure order, so last-seen sequences only grow from head to
+    // tail. Entries older than the history can no longer be caught up and
+    // are pruned from the head once per history's worth of messages.
+    private final Map<User, Long> lastSeenByDeparted = new LinkedHashMap<>();
+    // Rejoining users whose catch-up batch is still being delivered, with
+    // the live messages held back for them meanwhile.
+    private final Map<User, HeldMessages> catchingUp = new HashMap<>();
+    private long lastSequence;
+    private volatile PriorityDispatcher dispatcher;
     
     public ChatRoom(String roomName) {
-        this.users = new ArrayList<>();
+        this(roomName, true);
+    }
+    
+    public ChatRoom(String roomName, boolean verbose) {
+        this(roomName, verbose, DEFAULT_HISTORY_CAPACITY);
+    }
+    
+    public ChatRoom(String roomName, boolean verbose, int historyCapacity) {
+        this.users = new Membership();
         this.roomName = roomName;
-        System.out.println("Chat Room '" + roomName + "' created!");
+        this.verbose = verbose;
+        this.history = new MessageHistory(historyCapacity);
+        if (verbose) {
+            System.out.println("Chat Room '" + roomName + "' created!");
+        }
     }
     
+    // The catch-up range is read under the lock but delivered outside it, so
+    // live broadcasts never wait on the rejoining user. Until it has been
+    // delivered, broadcasts hold that user's messages back, and they are
+    // handed over in sequence order right after it.
     @Override
     public void addUser(User user) {
-        users.add(user);
-        System.out.println(" " + user.getName() + " joined '" + roomName + "'");
-        System.out.println("Total users in room: " + users.size() + "\n");
+        MessageBatch missed = null;
+        synchronized (publishLock) {
+            users.add(user);
+            // Re-adding a member must not undo their filters.
+            if (!subscriptions.hasFilters(user)) {
+                unfiltered(user).add(user);
+            }
+            Long lastSeen = lastSeenByDeparted.remove(user);
+            if (verbose) {
+                System.out.println(" " + user.getName() + " joined '" + roomName + "'");
+                System.out.println("Total users in room: " + users.size() + "\n");
+            }
+            if (lastSeen != null && lastSeen < lastSequence) {
+                MessageBatch batch = history.read(lastSeen + 1, lastSequence);
+                HeldMessages held = catchingUp.get(user);
+                if (held != null) {
+                    // An earlier catch-up is still running; it hands this
+                    // range over after everything it already holds.
+                    held.add(batch);
+                } else if (!batch.isEmpty()) {
+                    catchingUp.put(user, new HeldMessages());
+                    missed = batch;
+                }
+            }
+        }
+        if (missed != null) {
+            catchUp(user, missed);
+        }
     }
     
     @Override
     public void removeUser(User user) {
-        users.remove(user);
-        System.out.println(" " + user.getName() + " left '" + roomName + "'");
-        System.out.println(" Total users in room: " + users.size() + "\n");
+        synchronized (publishLock) {
+            if (users.remove(user)) {
+                unfiltered(user).remove(user);
+                subscriptions.removeAll(user);
+                lastSeenByDeparted.put(user, lastSequence);
+            }
+        }
+        if (verbose) {
+            System.out.println(" " + user.getName() + " left '" + roomName + "'");
+            System.out.println(" Total users in room: " + users.size() + "\n");
+        }
     }
     
     @Override
     public void sendMessage(String message, User sender) {
-        System.out.println("\n [" + roomName + "] Broadcasting message from " + sender.getName() + "...");
+        broadcast(message, sender);
+    }
+    
+    public int broadcast(String message, User sender) {
+        if (verbose) {
+            System.out.println("\n [" + roomName + "] Broadcasting message from " + sender.getName() + "...");
+        }
         
-        for (User user : users) {
-            if (user != sender) {
-                user.receive(message, sender);
+        EncodedMessage encoded;
+        User[] premium;
+        User[] basic;
+        Set<User> matched = null;
+        int held = 0;
+        synchronized (publishLock) {
+            encoded = EncodedMessage.encode(++lastSequence, sender.getName(), message);
+            history.append(encoded, sender);
+            if (lastSequence % history.getCapacity() == 0) {
+                pruneDeparted();
+            }
+            premium = unfiltered[DeliveryLane.PREMIUM.ordinal()].snapshot();
+            basic = unfiltered[DeliveryLane.BASIC.ordinal()].snapshot();
+            if (!subscriptions.isEmpty()) {
+                matched = new LinkedHashSet<>();
+                subscriptions.collectMatches(message, sender, matched);
+            }
+            if (!catchingUp.isEmpty()) {
+                User[] livePremium = holdBack(premium, encoded, sender);
+                User[] liveBasic = holdBack(basic, encoded, sender);
+                held = premium.length - livePremium.length + basic.length - liveBasic.length;
+                premium = livePremium;
+                basic = liveBasic;
+                if (matched != null) {
+                    int before = matched.size();
+                    matched.removeIf(user -> hold(user, encoded, sender));
+                    held += before - matched.size();
+                }
+            }
+        }
+        User[] matchedPremium = select(matched, DeliveryLane.PREMIUM);
+        User[] matchedBasic = select(matched, DeliveryLane.BASIC);
+        
+        PriorityDispatcher lanes = dispatcher;
+        if (lanes != null) {
+            // Premium receivers always ride the premium lane; everyone else
+            // follows the sender's tier, so a basic receiver can get a premium
+            // sender's message ahead of an earlier basic one.
+            DeliveryLane senderLane = sender.getDeliveryLane();
+            lanes.submit(DeliveryLane.PREMIUM, encoded, sender, premium);
+            lanes.submit(DeliveryLane.PREMIUM, encoded, sender, matchedPremium);
+            lanes.submit(senderLane, encoded, sender, basic);
+            lanes.submit(senderLane, encoded, sender, matchedBasic);
+            return held + countReceivers(premium, sender) + countReceivers(basic, sender)
+                    + countReceivers(matchedPremium, sender) + countReceivers(matchedBasic, sender);
+        }
+        int delivered = held + deliver(premium, encoded, sender);
+        delivered += deliver(matchedPremium, encoded, sender);
+        delivered += deliver(basic, encoded, sender);
+        delivered += deliver(matchedBasic, encoded, sender);
+        return delivered;
+    }
+    
+    // A user with at least one filter only receives messages matching any of them.
+    public void subscribe(User user, MessageFilter filter) {
+        synchronized (publishLock) {
+            if (!users.contains(user)) {
+                throw new IllegalArgumentException(user.getName() + " is not in '" + roomName + "'");
+            }
+            subscriptions.add(user, filter);
+            unfiltered(user).remove(user);
+        }
+        if (verbose) {
+            System.out.println(" " + user.getName() + " subscribed to " + filter);
+        }
+    }
+    
+    public void unsubscribe(User user, MessageFilter filter) {
+        synchronized (publishLock) {
+            if (subscriptions.remove(user, filter) && !subscriptions.hasFilters(user) && users.contains(user)) {
+                unfiltered(user).add(user);
             }
         }
     }
@@ -45,4 +197,145 @@ public class ChatRoom implements ChatMediator {
     public int getUserCount() {
         return users.size();
     }
+    
+    public List<User> getUsers() {
+        return Collections.unmodifiableList(Arrays.asList(users.snapshot()));
+    }
+    
+    public MessageHistory getHistory() {
+        return history;
+    }
+    
+    // With a dispatcher, broadcasts are queued per lane and delivered
+    // asynchronously; without one they are delivered on the caller's thread.
+    public void setDispatcher(PriorityDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+    
+    // Runs on the thread that added the user. If the user throws, what is
+    // still held for them is dropped so broadcasts stop holding more.
+    private void catchUp(User user, MessageBatch missed) {
+        try {
+            user.receive(missed);
+            MessageBatch held;
+            while ((held = takeHeld(user)) != null) {
+                user.receive(held);
+            }
+        } catch (RuntimeException e) {
+            synchronized (publishLock) {
+                catchingUp.remove(user);
+            }
+            throw e;
+        }
+    }
+    
+    // The user only goes back to live delivery once nothing is held, and
+    // both happen under the lock, so no broadcast can slip in between.
+    private MessageBatch takeHeld(User user) {
+        synchronized (publishLock) {
+            HeldMessages held = catchingUp.get(user);
+            if (held.isEmpty()) {
+                catchingUp.remove(user);
+                return null;
+            }
+            return held.drain();
+        }
+    }
+    
+    // Called under the lock, and only while someone is catching up.
+    private User[] holdBack(User[] receivers, EncodedMessage encoded, User sender) {
+        List<User> live = new ArrayList<>(receivers.length);
+        for (User user : receivers) {
+            if (!hold(user, encoded, sender)) {
+                live.add(user);
+            }
+        }
+        return live.size() == receivers.length ? receivers : live.toArray(NO_USERS);
+    }
+    
+    private boolean hold(User user, EncodedMessage encoded, User sender) {
+        HeldMessages held = user == sender ? null : catchingUp.get(user);
+        if (held == null) {
+            return false;
+        }
+        held.add(encoded, sender);
+        return true;
+    }
+    
+    private void pruneDeparted() {
+        long oldest = lastSequence - history.getCapacity();
+        Iterator<Long> it = lastSeenByDeparted.values().iterator();
+        while (it.hasNext() && it.next() < oldest) {
+            it.remove();
+        }
+    }
+    
+    private Membership unfiltered(User user) {
+        return unfiltered[user.getDeliveryLane().ordinal()];
+    }
+    
+    private int deliver(User[] receivers, EncodedMessage encoded, User sender) {
+        int delivered = 0;
+        for (User user : receivers) {
+            if (user != sender) {
+                user.receive(encoded, sender);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+    
+    private static int countReceivers(User[] receivers, User sender) {
+        int count = receivers.length;
+        for (User user : receivers) {
+            if (user == sender) {
+                return count - 1;
+            }
+        }
+        return count;
+    }
+    
+    private static User[] select(Set<User> matched, DeliveryLane lane) {
+        if (matched == null || matched.isEmpty()) {
+            return NO_USERS;
+        }
+        List<User> selected = new ArrayList<>();
+        for (User user : matched) {
+            if (user.getDeliveryLane() == lane) {
+                selected.add(user);
+            }
+        }
+        return selected.toArray(NO_USERS);
+    }
+    
+    private static class HeldMessages {
+        private List<EncodedMessage> messages = new ArrayList<>();
+        private List<User> senders = new ArrayList<>();
+        private long missed;
+        
+        void add(EncodedMessage message, User sender) {
+            messages.add(message);
+            senders.add(sender);
+        }
+        
+        void add(MessageBatch batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                add(batch.getMessage(i), batch.getSender(i));
+            }
+            missed += batch.getMissed();
+        }
+        
+        boolean isEmpty() {
+            return messages.isEmpty() && missed == 0;
+        }
+        
+        MessageBatch drain() {
+            MessageBatch batch = new MessageBatch(messages.toArray(new EncodedMessage[0]),
+                    senders.toArray(NO_USERS), messages.size(), missed);
+            messages = new ArrayList<>();
+            senders = new ArrayList<>();
+            missed = 0;
+            return batch;
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package MediatorPattern;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ChatServer implements ChatMediator {
+    public static final String LOBBY = "Lobby";
+    
+    private final EventLoop[] loops;
+    private final Map<User, String> memberships = new ConcurrentHashMap<>();
+    
+    public ChatServer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public ChatServer(int eventLoops) {
+        if (eventLoops < 1) {
+            throw new IllegalArgumentException("At least one event loop is required");
+        }
+        this.loops = new EventLoop[eventLoops];
+        for (int i = 0; i < eventLoops; i++) {
+            loops[i] = new EventLoop("chat-loop-" + i);
+        }
+    }
+    
+    public void createRoom(String roomName) {
+        EventLoop loop = loopFor(roomName);
+        loop.execute(() -> loop.createRoom(roomName));
+    }
+    
+    public void destroyRoom(String roomName) {
+        EventLoop loop = loopFor(roomName);
+        loop.execute(() -> {
+            ChatRoom room = loop.removeRoom(roomName);
+            if (room != null) {
+                for (User user : room.getUsers()) {
+                    memberships.remove(user, roomName);
+                }
+            }
+        });
+    }
+    
+    // The leave and the join are queued while the user's entry is locked,
+    // so moves of one user are queued in the order they were decided: a
+    // concurrent join's leave always lands on a loop behind this join's add.
+    public void join(String roomName, User user) {
+        memberships.compute(user, (member, previous) -> {
+            if (!roomName.equals(previous)) {
+                if (previous != null) {
+                    leaveRoom(previous, user);
+                }
+                EventLoop loop = loopFor(roomName);
+                loop.execute(() -> loop.createRoom(roomName).addUser(user));
+            }
+            return roomName;
+        });
+    }
+    
+    public void leave(User user) {
+        memberships.computeIfPresent(user, (member, roomName) -> {
+            leaveRoom(roomName, user);
+            return null;
+        });
+    }
+    
+    @Override
+    public void addUser(User user) {
+        join(LOBBY, user);
+    }
+    
+    @Override
+    public void removeUser(User user) {
+        leave(user);
+    }
+    
+    @Override
+    public void sendMessage(String message, User sender) {
+        String roomName = memberships.get(sender);
+        if (roomName == null) {
+            return;
+        }
+        EventLoop loop = loopFor(roomName);
+        loop.execute(() -> {
+            ChatRoom room = loop.getRoom(roomName);
+            if (room != null) {
+                loop.recordBroadcast(room.broadcast(message, sender));
+            }
+        });
+    }
+    
+    public String getRoomOf(User user) {
+        return memberships.get(user);
+    }
+    
+    public ServerStats getStats() {
+        long rooms = 0;
+        long routed = 0;
+        long delivered = 0;
+        int busiest = 0;
+        for (EventLoop loop : loops) {
+            int loopRooms = loop.getRoomCount();
+            rooms += loopRooms;
+            routed += loop.getMessagesRouted();
+            delivered += loop.getMessagesDelivered();
+            busiest = Math.max(busiest, loopRooms);
+        }
+        return new ServerStats(loops.length, rooms, memberships.size(), routed, delivered, busiest);
+    }
+    
+    public void awaitQuiescence() throws InterruptedException {
+        for (EventLoop loop : loops) {
+            loop.awaitIdle();
+        }
+    }
+    
+    public void shutdown() {
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
+    
+    private void leaveRoom(String roomName, User user) {
+        EventLoop loop = loopFor(roomName);
+        loop.execute(() -> {
+            ChatRoom room = loop.getRoom(roomName);
+            if (room != null) {
+                room.removeUser(user);
+            }
+        });
+    }
+    
+    private EventLoop loopFor(String roomName) {
+        int hash = roomName.hashCode();
+        hash ^= (hash >>> 16);
+        return loops[Math.floorMod(hash, loops.length)];
+    }
+}
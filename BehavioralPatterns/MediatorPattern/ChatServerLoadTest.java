@@ -0,0 +1,82 @@
+package MediatorPattern;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class ChatServerLoadTest {
+    private static final int ROOMS = 20_000;
+    private static final int USERS_PER_ROOM = 8;
+    private static final int MESSAGES = 2_000_000;
+    private static final String PAYLOAD = "load-test-message";
+    
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("Chat server load test: " + ROOMS + " rooms x " + USERS_PER_ROOM
+                + " users, " + MESSAGES + " messages, " + cores + " cores\n");
+        
+        for (int loops = 1; loops < cores; loops *= 2) {
+            run(loops);
+        }
+        run(cores);
+    }
+    
+    private static void run(int eventLoops) throws InterruptedException {
+        ChatServer server = new ChatServer(eventLoops);
+        CountingUser[] senders = new CountingUser[ROOMS * USERS_PER_ROOM];
+        for (int room = 0; room < ROOMS; room++) {
+            String roomName = "room-" + room;
+            server.createRoom(roomName);
+            for (int u = 0; u < USERS_PER_ROOM; u++) {
+                CountingUser user = new CountingUser(server, roomName + "-user-" + u);
+                server.join(roomName, user);
+                senders[room * USERS_PER_ROOM + u] = user;
+            }
+        }
+        server.awaitQuiescence();
+        
+        Thread[] producers = new Thread[eventLoops];
+        int perProducer = MESSAGES / producers.length;
+        for (int p = 0; p < producers.length; p++) {
+            producers[p] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < perProducer; i++) {
+                    senders[random.nextInt(senders.length)].send(PAYLOAD);
+                }
+            });
+        }
+        
+        long start = System.nanoTime();
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        server.awaitQuiescence();
+        long elapsed = System.nanoTime() - start;
+        
+        ServerStats stats = server.getStats();
+        double seconds = elapsed / 1_000_000_000.0;
+        System.out.printf("%2d loops: %,12.0f msgs/s  %,14.0f deliveries/s  (%s)%n",
+                eventLoops, stats.getMessagesRouted() / seconds,
+                stats.getMessagesDelivered() / seconds, stats);
+        server.shutdown();
+    }
+    
+    private static class CountingUser extends User {
+        private long received;
+        
+        CountingUser(ChatMediator mediator, String name) {
+            super(mediator, name);
+        }
+        
+        @Override
+        public void send(String message) {
+            mediator.sendMessage(message, this);
+        }
+        
+        @Override
+        public void receive(String message, User sender) {
+            received++;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package MediatorPattern;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Several threads keep moving the same users between rooms at once. When
+// they settle, every user sends one message, and every delivery must come
+// from a user whose room is also the receiver's: a user left registered in
+// a second room would hear that room's messages too.
+public class ConcurrentJoinTest {
+    private static final int ROOMS = 16;
+    private static final int USERS = 200;
+    private static final int THREADS = 4;
+    private static final int MOVES_PER_THREAD = 200_000;
+    private static final String FINAL = "final";
+
+    public static void main(String[] args) throws InterruptedException {
+        ChatServer server = new ChatServer(4);
+        AtomicLong strayDeliveries = new AtomicLong();
+        AtomicLong deliveries = new AtomicLong();
+        RecordingUser[] users = new RecordingUser[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = new RecordingUser(server, "user-" + i, deliveries, strayDeliveries);
+        }
+
+        Thread[] movers = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            movers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < MOVES_PER_THREAD; i++) {
+                    server.join("room-" + random.nextInt(ROOMS), users[random.nextInt(USERS)]);
+                }
+            });
+            movers[t].start();
+        }
+        for (Thread mover : movers) {
+            mover.join();
+        }
+        server.awaitQuiescence();
+
+        for (RecordingUser user : users) {
+            user.send(FINAL);
+        }
+        server.awaitQuiescence();
+
+        System.out.printf("%d threads x %,d joins over %d users and %d rooms%n",
+                THREADS, MOVES_PER_THREAD, USERS, ROOMS);
+        System.out.printf("%,d deliveries, %,d from another room (%s)%n", deliveries.get(), strayDeliveries.get(),
+                strayDeliveries.get() == 0 ? "consistent" : "user registered in two rooms");
+        server.shutdown();
+    }
+
+    private static class RecordingUser extends User {
+        private final ChatServer server;
+        private final AtomicLong deliveries;
+        private final AtomicLong strayDeliveries;
+
+        RecordingUser(ChatServer server, String name, AtomicLong deliveries, AtomicLong strayDeliveries) {
+            super(server, name);
+            this.server = server;
+            this.deliveries = deliveries;
+            this.strayDeliveries = strayDeliveries;
+        }
+
+        @Override
+        public void send(String message) {
+            mediator.sendMessage(message, this);
+        }
+
+        @Override
+        public void receive(String message, User sender) {
+            if (!FINAL.equals(message)) {
+                return;
+            }
+            deliveries.incrementAndGet();
+            if (!server.getRoomOf(this).equals(server.getRoomOf(sender))) {
+                strayDeliveries.incrementAndGet();
+            }
+        }
+    }
+}
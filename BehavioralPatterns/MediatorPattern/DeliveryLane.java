@@ -0,0 +1,6 @@
+package MediatorPattern;
+
+public enum DeliveryLane {
+    PREMIUM,
+    BASIC
+}
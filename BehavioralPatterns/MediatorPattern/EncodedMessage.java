@@ -0,0 +1,82 @@
+package MediatorPattern;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public final class EncodedMessage {
+    // frame length (int) + sequence (long) + sender name length (short)
+    public static final int FIXED_HEADER_BYTES = 4 + 8 + 2;
+    
+    private final long sequence;
+    private final String senderName;
+    private final String text;
+    private final ByteBuffer header;
+    private final ByteBuffer payload;
+    
+    private EncodedMessage(long sequence, String senderName, String text, ByteBuffer header, ByteBuffer payload) {
+        this.sequence = sequence;
+        this.senderName = senderName;
+        this.text = text;
+        this.header = header;
+        this.payload = payload;
+    }
+    
+    public static EncodedMessage encode(long sequence, String senderName, String text) {
+        byte[] senderBytes = senderName.getBytes(StandardCharsets.UTF_8);
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        if (senderBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Sender name too long: " + senderBytes.length + " bytes");
+        }
+        int headerLength = FIXED_HEADER_BYTES + senderBytes.length;
+        
+        ByteBuffer frame = ByteBuffer.allocate(headerLength + textBytes.length);
+        frame.putInt(frame.capacity() - 4);
+        frame.putLong(sequence);
+        frame.putShort((short) senderBytes.length);
+        frame.put(senderBytes);
+        frame.put(textBytes);
+        
+        ByteBuffer header = frame.duplicate().position(0).limit(headerLength).slice().asReadOnlyBuffer();
+        ByteBuffer payload = frame.duplicate().position(headerLength).slice().asReadOnlyBuffer();
+        return new EncodedMessage(sequence, senderName, text, header, payload);
+    }
+    
+    public static EncodedMessage decode(ByteBuffer frame) {
+        int frameLength = frame.getInt();
+        int end = frame.position() + frameLength;
+        long sequence = frame.getLong();
+        byte[] senderBytes = new byte[frame.getShort()];
+        frame.get(senderBytes);
+        byte[] textBytes = new byte[end - frame.position()];
+        frame.get(textBytes);
+        return encode(sequence,
+                new String(senderBytes, StandardCharsets.UTF_8),
+                new String(textBytes, StandardCharsets.UTF_8));
+    }
+    
+    public long getSequence() {
+        return sequence;
+    }
+    
+    public String getSenderName() {
+        return senderName;
+    }
+    
+    public String getText() {
+        return text;
+    }
+    
+    // Each call returns an independent view over the same bytes, so the
+    // frame is shared by every receiver and never copied.
+    public ByteBuffer header() {
+        return header.duplicate();
+    }
+    
+    public ByteBuffer payload() {
+        return payload.duplicate();
+    }
+    
+    public int getFrameLength() {
+        return header.capacity() + payload.capacity();
+    }
+}
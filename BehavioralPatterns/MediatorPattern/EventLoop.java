@@ -0,0 +1,77 @@
+package MediatorPattern;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class EventLoop {
+    private final ExecutorService executor;
+    // Only ever touched from the loop thread, so rooms need no locking.
+    private final Map<String, ChatRoom> rooms = new HashMap<>();
+    private volatile int roomCount;
+    private volatile long messagesRouted;
+    private volatile long messagesDelivered;
+    
+    public EventLoop(String name) {
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+    
+    ChatRoom getRoom(String roomName) {
+        return rooms.get(roomName);
+    }
+    
+    ChatRoom createRoom(String roomName) {
+        ChatRoom room = rooms.get(roomName);
+        if (room == null) {
+            room = new ChatRoom(roomName, false);
+            rooms.put(roomName, room);
+            roomCount = rooms.size();
+        }
+        return room;
+    }
+    
+    ChatRoom removeRoom(String roomName) {
+        ChatRoom room = rooms.remove(roomName);
+        roomCount = rooms.size();
+        return room;
+    }
+    
+    void recordBroadcast(int delivered) {
+        messagesRouted++;
+        messagesDelivered += delivered;
+    }
+    
+    public int getRoomCount() {
+        return roomCount;
+    }
+    
+    public long getMessagesRouted() {
+        return messagesRouted;
+    }
+    
+    public long getMessagesDelivered() {
+        return messagesDelivered;
+    }
+    
+    public void awaitIdle() throws InterruptedException {
+        try {
+            executor.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Event loop failed", e.getCause());
+        }
+    }
+    
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,96 @@
+package MediatorPattern;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GatewayLoopbackHarness {
+    private static final int CLIENTS = 32;
+    private static final int MESSAGES = 20_000;
+    
+    public static void main(String[] args) throws Exception {
+        ChatRoom room = new ChatRoom("Loopback", false);
+        Publisher publisher = new Publisher(room, "publisher");
+        
+        try (SocketGateway gateway = new SocketGateway(room, "gateway", 0)) {
+            int port = gateway.getPort();
+            AtomicInteger failures = new AtomicInteger();
+            Thread[] readers = new Thread[CLIENTS];
+            for (int i = 0; i < CLIENTS; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+                readers[i] = new Thread(() -> {
+                    if (!readAll(channel)) {
+                        failures.incrementAndGet();
+                    }
+                });
+            }
+            while (gateway.getClientCount() < CLIENTS) {
+                Thread.sleep(10);
+            }
+            
+            long start = System.nanoTime();
+            for (Thread reader : readers) {
+                reader.start();
+            }
+            for (int i = 1; i <= MESSAGES; i++) {
+                publisher.send("message #" + i);
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            long elapsed = System.nanoTime() - start;
+            
+            double seconds = elapsed / 1_000_000_000.0;
+            System.out.printf("%d clients x %d messages in %.2fs (%,.0f frames/s), failed clients: %d%n",
+                    CLIENTS, MESSAGES, seconds, CLIENTS * (double) MESSAGES / seconds, failures.get());
+        }
+    }
+    
+    private static boolean readAll(SocketChannel channel) {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        try (channel) {
+            for (int expected = 1; expected <= MESSAGES; expected++) {
+                lengthBuffer.clear();
+                readFully(channel, lengthBuffer);
+                ByteBuffer frame = ByteBuffer.allocate(4 + lengthBuffer.getInt(0));
+                frame.put(lengthBuffer.flip());
+                readFully(channel, frame);
+                EncodedMessage message = EncodedMessage.decode(frame.flip());
+                if (message.getSequence() != expected || !message.getText().equals("message #" + expected)) {
+                    System.out.println("Unexpected frame " + message.getSequence() + ": " + message.getText());
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("Client failed: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed");
+            }
+        }
+    }
+    
+    private static class Publisher extends User {
+        Publisher(ChatMediator mediator, String name) {
+            super(mediator, name);
+            mediator.addUser(this);
+        }
+        
+        @Override
+        public void send(String message) {
+            mediator.sendMessage(message, this);
+        }
+        
+        @Override
+        public void receive(String message, User sender) {
+        }
+    }
+}
@@ -47,6 +47,23 @@ public class Main {
         System.out.println();
         charlie.send("I'm in!");
         
+        System.out.println("\n------------------------------------------");
+        System.out.println("  User rejoining chat room...");
+        System.out.println("------------------------------------------\n");
+        
+        generalChat.addUser(bob);
+        
+        System.out.println("\n------------------------------------------");
+        System.out.println("  Filtered subscriptions...");
+        System.out.println("------------------------------------------\n");
+        
+        generalChat.subscribe(diana, MessageFilter.withKeyword("coffee"));
+        
+        alice.send("Coffee is ready in the kitchen");
+        
+        System.out.println();
+        bob.send("Thanks for catching me up!");
+        
         System.out.println("\n----------------------------------------");
         System.out.println("  Demonstrating the Mediator Pattern");
         System.out.println("------------------------------------------");
@@ -0,0 +1,78 @@
+package MediatorPattern;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class Membership {
+    private static final User[] EMPTY = new User[0];
+    
+    private final Map<User, Integer> indexes = new HashMap<>();
+    private User[] members = new User[8];
+    private int size;
+    private volatile long epoch;
+    private volatile Snapshot snapshot = new Snapshot(EMPTY, 0);
+    
+    public synchronized boolean add(User user) {
+        if (indexes.containsKey(user)) {
+            return false;
+        }
+        if (size == members.length) {
+            members = Arrays.copyOf(members, size * 2);
+        }
+        members[size] = user;
+        indexes.put(user, size);
+        size++;
+        epoch++;
+        return true;
+    }
+    
+    public synchronized boolean remove(User user) {
+        Integer index = indexes.remove(user);
+        if (index == null) {
+            return false;
+        }
+        int last = --size;
+        if (index != last) {
+            User moved = members[last];
+            members[index] = moved;
+            indexes.put(moved, index);
+        }
+        members[last] = null;
+        epoch++;
+        return true;
+    }
+    
+    public synchronized boolean contains(User user) {
+        return indexes.containsKey(user);
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    // Readers get an immutable array that is only rebuilt after the
+    // membership changed, so a broadcast never sees a half-applied join/leave.
+    public User[] snapshot() {
+        Snapshot current = snapshot;
+        if (current.epoch == epoch) {
+            return current.users;
+        }
+        synchronized (this) {
+            if (snapshot.epoch != epoch) {
+                snapshot = new Snapshot(size == 0 ? EMPTY : Arrays.copyOf(members, size), epoch);
+            }
+            return snapshot.users;
+        }
+    }
+    
+    private static final class Snapshot {
+        private final User[] users;
+        private final long epoch;
+        
+        private Snapshot(User[] users, long epoch) {
+            this.users = users;
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package MediatorPattern;
+
+public class MessageBatch {
+    private final EncodedMessage[] messages;
+    private final User[] senders;
+    private final int size;
+    private final long missed;
+    
+    public MessageBatch(EncodedMessage[] messages, User[] senders, int size, long missed) {
+        this.messages = messages;
+        this.senders = senders;
+        this.size = size;
+        this.missed = missed;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public EncodedMessage getMessage(int index) {
+        return messages[index];
+    }
+    
+    public User getSender(int index) {
+        return senders[index];
+    }
+    
+    // Messages that had already been overwritten in the room history.
+    public long getMissed() {
+        return missed;
+    }
+}
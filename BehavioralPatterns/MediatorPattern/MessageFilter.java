@@ -0,0 +1,62 @@
+package MediatorPattern;
+
+import java.util.Locale;
+import java.util.Objects;
+
+public final class MessageFilter {
+    public enum Kind {
+        SENDER,
+        KEYWORD,
+        USER_TYPE
+    }
+    
+    private final Kind kind;
+    private final Object key;
+    
+    private MessageFilter(Kind kind, Object key) {
+        this.kind = kind;
+        this.key = key;
+    }
+    
+    public static MessageFilter fromSender(String senderName) {
+        return new MessageFilter(Kind.SENDER, senderName);
+    }
+    
+    public static MessageFilter withKeyword(String keyword) {
+        return new MessageFilter(Kind.KEYWORD, keyword.toLowerCase(Locale.ROOT));
+    }
+    
+    public static MessageFilter fromUserType(Class<? extends User> userType) {
+        return new MessageFilter(Kind.USER_TYPE, userType);
+    }
+    
+    public Kind getKind() {
+        return kind;
+    }
+    
+    public Object getKey() {
+        return key;
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof MessageFilter)) {
+            return false;
+        }
+        MessageFilter that = (MessageFilter) other;
+        return kind == that.kind && key.equals(that.key);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, key);
+    }
+    
+    @Override
+    public String toString() {
+        return kind + ":" + (key instanceof Class ? ((Class<?>) key).getSimpleName() : key);
+    }
+}
@@ -0,0 +1,69 @@
+package MediatorPattern;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class MessageHistory {
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private volatile long lastSequence;
+    
+    public MessageHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+    
+    // Callers must append from one thread at a time, in sequence order.
+    public void append(EncodedMessage message, User sender) {
+        long sequence = message.getSequence();
+        slots.set((int) (sequence & mask), new Entry(message, sender));
+        lastSequence = sequence;
+    }
+    
+    // Lock-free: an entry overwritten while we read is counted as missed
+    // instead of holding up the writer.
+    public MessageBatch read(long fromSequence, long toSequence) {
+        long oldest = Math.max(1, lastSequence - mask);
+        long from = Math.max(fromSequence, oldest);
+        long missed = from - fromSequence;
+        int capacity = (int) Math.max(0, toSequence - from + 1);
+        EncodedMessage[] messages = new EncodedMessage[capacity];
+        User[] senders = new User[capacity];
+        int size = 0;
+        for (long sequence = from; sequence <= toSequence; sequence++) {
+            Entry entry = slots.get((int) (sequence & mask));
+            if (entry == null || entry.message.getSequence() != sequence) {
+                missed++;
+                continue;
+            }
+            messages[size] = entry.message;
+            senders[size] = entry.sender;
+            size++;
+        }
+        return new MessageBatch(messages, senders, size, missed);
+    }
+    
+    public long getLastSequence() {
+        return lastSequence;
+    }
+    
+    public int getCapacity() {
+        return mask + 1;
+    }
+    
+    private static final class Entry {
+        private final EncodedMessage message;
+        private final User sender;
+        
+        private Entry(EncodedMessage message, User sender) {
+            this.message = message;
+            this.sender = sender;
+        }
+    }
+}
@@ -17,4 +17,15 @@ public class PremiumUser extends User {
     public void receive(String message, User sender) {
         System.out.println(" " + name + " (Premium) received from " + sender.getName() + ": \"" + message + "\"");
     }
+    
+    @Override
+    public void receive(MessageBatch batch) {
+        System.out.println(" " + name + " (Premium) catching up on " + batch.size() + " missed message(s)");
+        super.receive(batch);
+    }
+    
+    @Override
+    public DeliveryLane getDeliveryLane() {
+        return DeliveryLane.PREMIUM;
+    }
 }
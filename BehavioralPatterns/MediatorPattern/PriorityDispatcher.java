@@ -0,0 +1,192 @@
+package MediatorPattern;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Each lane is FIFO, but the lanes are drained independently, so a receiver
+// that is sent to through both lanes can see a premium sender's message
+// ahead of an earlier basic one. That reordering is the price of premium
+// senders overtaking a basic flood; every EncodedMessage still carries its
+// room sequence number for receivers that need strict order.
+public class PriorityDispatcher implements AutoCloseable {
+    // Large rooms are split into slices so one basic broadcast cannot hold
+    // the dispatcher for long while premium deliveries wait.
+    public static final int SLICE_SIZE = 64;
+    
+    private static final DeliveryLane[] LANES = DeliveryLane.values();
+    
+    private final List<Queue<Delivery>> queues = new ArrayList<>();
+    private final int[] weights;
+    private final int[] credits;
+    private final LatencyHistogram[] latencies;
+    private final Semaphore available = new Semaphore(0);
+    private final AtomicLong pending = new AtomicLong();
+    private final Object idleLock = new Object();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private volatile boolean closed;
+    private int currentLane;
+    
+    public PriorityDispatcher(int premiumWeight, int basicWeight) {
+        if (premiumWeight < 1 || basicWeight < 1) {
+            throw new IllegalArgumentException("Lane weights must be positive");
+        }
+        this.latencies = new LatencyHistogram[LANES.length];
+        for (int i = 0; i < LANES.length; i++) {
+            queues.add(new ConcurrentLinkedQueue<>());
+            latencies[i] = new LatencyHistogram();
+        }
+        this.weights = new int[LANES.length];
+        weights[DeliveryLane.PREMIUM.ordinal()] = premiumWeight;
+        weights[DeliveryLane.BASIC.ordinal()] = basicWeight;
+        this.credits = weights.clone();
+        this.worker = new Thread(this::run, "priority-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    // Slices are counted as pending before `closed` is checked, so close()
+    // either waits for them or this call sees the flag and backs out.
+    public void submit(DeliveryLane lane, EncodedMessage message, User sender, User[] receivers) {
+        int slices = (receivers.length + SLICE_SIZE - 1) / SLICE_SIZE;
+        if (slices == 0) {
+            return;
+        }
+        pending.addAndGet(slices);
+        if (closed) {
+            completed(slices);
+            throw new IllegalStateException("Dispatcher is closed");
+        }
+        long now = System.nanoTime();
+        for (int from = 0; from < receivers.length; from += SLICE_SIZE) {
+            int to = Math.min(receivers.length, from + SLICE_SIZE);
+            queues.get(lane.ordinal()).add(new Delivery(message, sender, receivers, from, to, now));
+            available.release();
+        }
+    }
+    
+    public LatencyHistogram getLatency(DeliveryLane lane) {
+        return latencies[lane.ordinal()];
+    }
+    
+    public int getQueuedSlices(DeliveryLane lane) {
+        return queues.get(lane.ordinal()).size();
+    }
+    
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (DeliveryLane lane : LANES) {
+            LatencyHistogram histogram = latencies[lane.ordinal()];
+            report.append(String.format("%-8s deliveries=%,d p50=%,dus p99=%,dus p99.9=%,dus max=%,dus%n",
+                    lane, histogram.getCount(),
+                    histogram.percentileNanos(50) / 1000, histogram.percentileNanos(99) / 1000,
+                    histogram.percentileNanos(99.9) / 1000, histogram.getMaxNanos() / 1000));
+        }
+        return report.toString();
+    }
+    
+    public void awaitIdle() throws InterruptedException {
+        synchronized (idleLock) {
+            while (pending.get() > 0) {
+                idleLock.wait();
+            }
+        }
+    }
+    
+    // Later submits are rejected; everything already queued is delivered.
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            awaitIdle();
+            running = false;
+            available.release();
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void run() {
+        while (true) {
+            try {
+                available.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!running) {
+                return;
+            }
+            Delivery delivery = next();
+            LatencyHistogram histogram = latencies[currentLane];
+            try {
+                for (int i = delivery.from; i < delivery.to; i++) {
+                    User receiver = delivery.receivers[i];
+                    if (receiver != delivery.sender) {
+                        deliver(receiver, delivery);
+                        histogram.record(System.nanoTime() - delivery.enqueuedAt);
+                    }
+                }
+            } finally {
+                completed(1);
+            }
+        }
+    }
+    
+    // One failing receiver must not kill the worker: the rest of the slice
+    // and everything queued behind it would never be delivered, and
+    // awaitIdle() and close() would wait forever.
+    private static void deliver(User receiver, Delivery delivery) {
+        try {
+            receiver.receive(delivery.message, delivery.sender);
+        } catch (RuntimeException e) {
+            System.err.println("Receiver " + receiver.getName() + " failed: " + e);
+        }
+    }
+    
+    private void completed(int slices) {
+        if (pending.addAndGet(-slices) == 0) {
+            synchronized (idleLock) {
+                idleLock.notifyAll();
+            }
+        }
+    }
+    
+    // Weighted round robin: a lane may take up to its weight in slices before
+    // the next non-empty lane gets a turn. A permit guarantees one is queued.
+    private Delivery next() {
+        while (true) {
+            if (credits[currentLane] > 0) {
+                Delivery delivery = queues.get(currentLane).poll();
+                if (delivery != null) {
+                    credits[currentLane]--;
+                    return delivery;
+                }
+            }
+            credits[currentLane] = weights[currentLane];
+            currentLane = (currentLane + 1) % LANES.length;
+        }
+    }
+    
+    private static final class Delivery {
+        private final EncodedMessage message;
+        private final User sender;
+        private final User[] receivers;
+        private final int from;
+        private final int to;
+        private final long enqueuedAt;
+        
+        private Delivery(EncodedMessage message, User sender, User[] receivers, int from, int to, long enqueuedAt) {
+            this.message = message;
+            this.sender = sender;
+            this.receivers = receivers;
+            this.from = from;
+            this.to = to;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
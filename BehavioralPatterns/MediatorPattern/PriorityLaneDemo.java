@@ -0,0 +1,63 @@
+package MediatorPattern;
+
+public class PriorityLaneDemo {
+    private static final int PREMIUM_USERS = 20;
+    private static final int BASIC_USERS = 2_000;
+    private static final int BASIC_FLOOD = 5_000;
+    private static final int PREMIUM_MESSAGES = 250;
+    
+    public static void main(String[] args) throws InterruptedException {
+        ChatRoom room = new ChatRoom("Flooded", false);
+        try (PriorityDispatcher dispatcher = new PriorityDispatcher(8, 1)) {
+            room.setDispatcher(dispatcher);
+            
+            QuietUser[] premium = new QuietUser[PREMIUM_USERS];
+            for (int i = 0; i < premium.length; i++) {
+                premium[i] = new QuietUser(room, "premium-" + i, true);
+            }
+            QuietUser[] basic = new QuietUser[BASIC_USERS];
+            for (int i = 0; i < basic.length; i++) {
+                basic[i] = new QuietUser(room, "basic-" + i, false);
+            }
+            
+            System.out.println("Flooding " + BASIC_FLOOD + " basic broadcasts into a room of "
+                    + (PREMIUM_USERS + BASIC_USERS) + " users, with " + PREMIUM_MESSAGES
+                    + " premium broadcasts mixed in (weights 8:1)\n");
+            int premiumEvery = BASIC_FLOOD / PREMIUM_MESSAGES;
+            for (int i = 0; i < BASIC_FLOOD; i++) {
+                basic[i % basic.length].send("flood " + i);
+                if (i % premiumEvery == 0) {
+                    premium[i % premium.length].send("priority " + i);
+                }
+            }
+            dispatcher.awaitIdle();
+            System.out.print(dispatcher.report());
+        }
+    }
+    
+    private static class QuietUser extends User {
+        private final DeliveryLane lane;
+        private long received;
+        
+        QuietUser(ChatMediator mediator, String name, boolean premium) {
+            super(mediator, name);
+            this.lane = premium ? DeliveryLane.PREMIUM : DeliveryLane.BASIC;
+            mediator.addUser(this);
+        }
+        
+        @Override
+        public DeliveryLane getDeliveryLane() {
+            return lane;
+        }
+        
+        @Override
+        public void send(String message) {
+            mediator.sendMessage(message, this);
+        }
+        
+        @Override
+        public void receive(String message, User sender) {
+            received++;
+        }
+    }
+}
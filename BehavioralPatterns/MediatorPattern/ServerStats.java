@@ -0,0 +1,51 @@
+package MediatorPattern;
+
+public class ServerStats {
+    private final int eventLoops;
+    private final long rooms;
+    private final long users;
+    private final long messagesRouted;
+    private final long messagesDelivered;
+    private final int busiestLoopRooms;
+    
+    public ServerStats(int eventLoops, long rooms, long users, long messagesRouted,
+                       long messagesDelivered, int busiestLoopRooms) {
+        this.eventLoops = eventLoops;
+        this.rooms = rooms;
+        this.users = users;
+        this.messagesRouted = messagesRouted;
+        this.messagesDelivered = messagesDelivered;
+        this.busiestLoopRooms = busiestLoopRooms;
+    }
+    
+    public int getEventLoops() {
+        return eventLoops;
+    }
+    
+    public long getRooms() {
+        return rooms;
+    }
+    
+    public long getUsers() {
+        return users;
+    }
+    
+    public long getMessagesRouted() {
+        return messagesRouted;
+    }
+    
+    public long getMessagesDelivered() {
+        return messagesDelivered;
+    }
+    
+    public int getBusiestLoopRooms() {
+        return busiestLoopRooms;
+    }
+    
+    @Override
+    public String toString() {
+        return "loops=" + eventLoops + ", rooms=" + rooms + ", users=" + users
+                + ", routed=" + messagesRouted + ", delivered=" + messagesDelivered
+                + ", busiest loop rooms=" + busiestLoopRooms;
+    }
+}
@@ -0,0 +1,253 @@
+package MediatorPattern;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class SocketGateway extends User implements Closeable {
+    public static final int DEFAULT_MAX_PENDING_BYTES = 4 * 1024 * 1024;
+    
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Queue<EncodedMessage> outbound = new ConcurrentLinkedQueue<>();
+    // Owned by the I/O thread.
+    private final List<ClientConnection> clients = new ArrayList<>();
+    private final ByteBuffer[] gather = new ByteBuffer[2];
+    // Clients only read; anything they send is drained here and dropped.
+    private final ByteBuffer discard = ByteBuffer.allocateDirect(1024);
+    private final int maxPendingBytes;
+    private final Thread ioThread;
+    private volatile boolean running = true;
+    private volatile int clientCount;
+    private volatile long slowConsumerDisconnects;
+    
+    public SocketGateway(ChatMediator mediator, String name, int port) throws IOException {
+        this(mediator, name, port, DEFAULT_MAX_PENDING_BYTES);
+    }
+    
+    // A client whose queued, unsent frames would exceed maxPendingBytes is
+    // disconnected as a slow consumer rather than buffered without limit.
+    public SocketGateway(ChatMediator mediator, String name, int port, int maxPendingBytes) throws IOException {
+        super(mediator, name);
+        if (maxPendingBytes < 1) {
+            throw new IllegalArgumentException("Pending byte limit must be positive");
+        }
+        this.maxPendingBytes = maxPendingBytes;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.ioThread = new Thread(this::runLoop, "gateway-" + name);
+        ioThread.setDaemon(true);
+        ioThread.start();
+        mediator.addUser(this);
+    }
+    
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+    
+    public int getClientCount() {
+        return clientCount;
+    }
+    
+    public long getSlowConsumerDisconnects() {
+        return slowConsumerDisconnects;
+    }
+    
+    @Override
+    public void send(String message) {
+        mediator.sendMessage(message, this);
+    }
+    
+    @Override
+    public void receive(String message, User sender) {
+        receive(EncodedMessage.encode(0, sender.getName(), message), sender);
+    }
+    
+    @Override
+    public void receive(EncodedMessage message, User sender) {
+        outbound.add(message);
+        selector.wakeup();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ClientConnection client : clients) {
+            client.channel.close();
+        }
+        serverChannel.close();
+        selector.close();
+    }
+    
+    private void runLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    ClientConnection client = (ClientConnection) key.attachment();
+                    if (key.isReadable()) {
+                        drainInput(client);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flushPending(client);
+                    }
+                }
+                EncodedMessage message;
+                while ((message = outbound.poll()) != null) {
+                    broadcast(message);
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                throw new IllegalStateException("Gateway I/O loop failed", e);
+            }
+        }
+    }
+    
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            ClientConnection client = new ClientConnection(channel);
+            client.key = channel.register(selector, SelectionKey.OP_READ, client);
+            clients.add(client);
+            clientCount = clients.size();
+        }
+    }
+    
+    // One header/payload view pair per message is rewound for every client;
+    // only a client that cannot take the whole frame gets its own views.
+    private void broadcast(EncodedMessage message) {
+        gather[0] = message.header();
+        gather[1] = message.payload();
+        Iterator<ClientConnection> it = clients.iterator();
+        while (it.hasNext()) {
+            ClientConnection client = it.next();
+            try {
+                if (client.hasPending()) {
+                    if (client.pendingBytes + message.getFrameLength() > maxPendingBytes) {
+                        slowConsumerDisconnects++;
+                        disconnect(client);
+                        it.remove();
+                        continue;
+                    }
+                    client.pending.add(message);
+                    client.pendingBytes += message.getFrameLength();
+                    continue;
+                }
+                gather[0].rewind();
+                gather[1].rewind();
+                client.channel.write(gather);
+                if (hasRemaining(gather)) {
+                    client.inFlight = new ByteBuffer[] { gather[0].duplicate(), gather[1].duplicate() };
+                    client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                disconnect(client);
+                it.remove();
+            }
+        }
+        clientCount = clients.size();
+    }
+    
+    private void flushPending(ClientConnection client) {
+        try {
+            while (client.inFlight != null) {
+                client.channel.write(client.inFlight);
+                if (hasRemaining(client.inFlight)) {
+                    return;
+                }
+                EncodedMessage next = client.pending.poll();
+                if (next == null) {
+                    client.inFlight = null;
+                } else {
+                    client.pendingBytes -= next.getFrameLength();
+                    client.inFlight = new ByteBuffer[] { next.header(), next.payload() };
+                }
+            }
+            client.key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            drop(client);
+        }
+    }
+    
+    // Notices a client hanging up without waiting for the next failed write.
+    private void drainInput(ClientConnection client) {
+        try {
+            int read;
+            do {
+                discard.clear();
+                read = client.channel.read(discard);
+            } while (read > 0);
+            if (read < 0) {
+                drop(client);
+            }
+        } catch (IOException e) {
+            drop(client);
+        }
+    }
+    
+    private void drop(ClientConnection client) {
+        disconnect(client);
+        clients.remove(client);
+        clientCount = clients.size();
+    }
+    
+    private static boolean hasRemaining(ByteBuffer[] frame) {
+        return frame[0].hasRemaining() || frame[1].hasRemaining();
+    }
+    
+    private void disconnect(ClientConnection client) {
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+    
+    private static final class ClientConnection {
+        private final SocketChannel channel;
+        private final Queue<EncodedMessage> pending = new ArrayDeque<>();
+        private ByteBuffer[] inFlight;
+        private long pendingBytes;
+        private SelectionKey key;
+        
+        private ClientConnection(SocketChannel channel) {
+            this.channel = channel;
+        }
+        
+        private boolean hasPending() {
+            return inFlight != null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package MediatorPattern;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Inverted indexes from filter keys to the users that asked for them, so a
+// message is only matched against receivers that could possibly want it.
+public class SubscriptionIndex {
+    private final Map<MessageFilter.Kind, Map<Object, Membership>> indexes = new EnumMap<>(MessageFilter.Kind.class);
+    private final Map<User, Set<MessageFilter>> filtersByUser = new HashMap<>();
+    
+    public SubscriptionIndex() {
+        for (MessageFilter.Kind kind : MessageFilter.Kind.values()) {
+            indexes.put(kind, new HashMap<>());
+        }
+    }
+    
+    public boolean add(User user, MessageFilter filter) {
+        if (!filtersByUser.computeIfAbsent(user, u -> new HashSet<>()).add(filter)) {
+            return false;
+        }
+        indexes.get(filter.getKind()).computeIfAbsent(filter.getKey(), k -> new Membership()).add(user);
+        return true;
+    }
+    
+    public boolean remove(User user, MessageFilter filter) {
+        Set<MessageFilter> filters = filtersByUser.get(user);
+        if (filters == null || !filters.remove(filter)) {
+            return false;
+        }
+        if (filters.isEmpty()) {
+            filtersByUser.remove(user);
+        }
+        unindex(user, filter);
+        return true;
+    }
+    
+    public void removeAll(User user) {
+        Set<MessageFilter> filters = filtersByUser.remove(user);
+        if (filters != null) {
+            for (MessageFilter filter : filters) {
+                unindex(user, filter);
+            }
+        }
+    }
+    
+    public boolean hasFilters(User user) {
+        return filtersByUser.containsKey(user);
+    }
+    
+    public boolean isEmpty() {
+        return filtersByUser.isEmpty();
+    }
+    
+    public void collectMatches(String message, User sender, Set<User> into) {
+        addAll(indexes.get(MessageFilter.Kind.SENDER).get(sender.getName()), into);
+        
+        Map<Object, Membership> byType = indexes.get(MessageFilter.Kind.USER_TYPE);
+        if (!byType.isEmpty()) {
+            for (Class<?> type = sender.getClass(); type != Object.class; type = type.getSuperclass()) {
+                addAll(byType.get(type), into);
+            }
+        }
+        
+        Map<Object, Membership> byKeyword = indexes.get(MessageFilter.Kind.KEYWORD);
+        if (!byKeyword.isEmpty()) {
+            int start = -1;
+            for (int i = 0; i <= message.length(); i++) {
+                boolean wordChar = i < message.length() && Character.isLetterOrDigit(message.charAt(i));
+                if (wordChar && start < 0) {
+                    start = i;
+                } else if (!wordChar && start >= 0) {
+                    addAll(byKeyword.get(message.substring(start, i).toLowerCase(Locale.ROOT)), into);
+                    start = -1;
+                }
+            }
+        }
+    }
+    
+    private void unindex(User user, MessageFilter filter) {
+        Map<Object, Membership> index = indexes.get(filter.getKind());
+        Membership members = index.get(filter.getKey());
+        if (members != null) {
+            members.remove(user);
+            if (members.size() == 0) {
+                index.remove(filter.getKey());
+            }
+        }
+    }
+    
+    private static void addAll(Membership members, Set<User> into) {
+        if (members != null) {
+            for (User user : members.snapshot()) {
+                into.add(user);
+            }
+        }
+    }
+}
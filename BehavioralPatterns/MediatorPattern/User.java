@@ -12,6 +12,20 @@ public abstract class User {
 
     public abstract void receive(String message, User sender);
     
+    public void receive(EncodedMessage message, User sender) {
+        receive(message.getText(), sender);
+    }
+    
+    public void receive(MessageBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            receive(batch.getMessage(i), batch.getSender(i));
+        }
+    }
+    
+    public DeliveryLane getDeliveryLane() {
+        return DeliveryLane.BASIC;
+    }
+    
     public String getName() {
         return name;
     }
@@ -0,0 +1,133 @@
+package MementoPattern;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Interns History's states by content hash so identical states share one
+// stored rope. Each entry counts the mementos in History that resolve to it
+// and is dropped once the last of them leaves.
+//
+// Mementos are immutable, so a caretaker that re-encodes a state reports the
+// swap through replace(). The editor still holds the memento it saved last,
+// so until the next intern a replaced memento forwards to its replacement.
+class ContentStore {
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<EditorMemento, Holder> holders = new IdentityHashMap<>();
+    private final Map<EditorMemento, EditorMemento> replacedSinceIntern = new IdentityHashMap<>();
+
+    // Registers a memento entering History and returns the memento to hold.
+    // A delta against a state that has since been replaced is moved onto the
+    // replacement, and a state identical to one already stored comes back as
+    // a checkpoint sharing that rope. A hash match is always confirmed
+    // against the content itself.
+    EditorMemento intern(EditorMemento memento) {
+        EditorMemento base = memento.getBase();
+        if (base != null && replacedSinceIntern.containsKey(base)) {
+            while (replacedSinceIntern.containsKey(base)) {
+                base = replacedSinceIntern.get(base);
+            }
+            memento = memento.withBase(base);
+        }
+        replacedSinceIntern.clear();
+        // The same memento pushed twice is two references, and stays held
+        // until both have been released.
+        Holder holder = holders.get(memento);
+        if (holder != null) {
+            holder.count++;
+            holder.entry.references++;
+            return memento;
+        }
+        long hash = memento.getContentHash();
+        Entry entry = entries.get(hash);
+        if (entry == null) {
+            entry = new Entry(hash, memento);
+            entries.put(hash, entry);
+            holders.put(memento, new Holder(entry));
+            return memento;
+        }
+        if (entry.length != memento.getLength() || !entry.content().contentEquals(memento.getRope())) {
+            return memento;
+        }
+        EditorMemento shared = memento.sharing(entry.content());
+        entry.references++;
+        holders.put(shared, new Holder(entry));
+        return shared;
+    }
+
+    // `replacement` has the same content as `memento` and takes its place.
+    void replace(EditorMemento memento, EditorMemento replacement) {
+        replacedSinceIntern.put(memento, replacement);
+        Holder holder = holders.remove(memento);
+        if (holder == null) {
+            return;
+        }
+        holders.put(replacement, holder);
+        if (holder.entry.origin == memento) {
+            holder.entry.origin = replacement;
+        }
+    }
+
+    // Called while the memento is still intact, so if it was the one the
+    // entry was created from its content can be captured for the others.
+    // Sharers are only charged their overhead, so from then on the store
+    // itself is charged for the content as a full copy. Returns the change
+    // in those bytes for the caretaker's budget.
+    long release(EditorMemento memento) {
+        Holder holder = holders.get(memento);
+        if (holder == null) {
+            return 0;
+        }
+        Entry entry = holder.entry;
+        if (--holder.count == 0) {
+            holders.remove(memento);
+        }
+        if (--entry.references == 0) {
+            entries.remove(entry.hash);
+            return -entry.orphanedBytes;
+        }
+        if (holder.count == 0 && entry.origin == memento) {
+            entry.content();
+            entry.origin = null;
+            entry.orphanedBytes = 2L * entry.length;
+            return entry.orphanedBytes;
+        }
+        return 0;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static final class Holder {
+        final Entry entry;
+        int count = 1;
+
+        Holder(Entry entry) {
+            this.entry = entry;
+        }
+    }
+
+    private static final class Entry {
+        final long hash;
+        final int length;
+        // The content is only rebuilt from the first memento on a hit.
+        EditorMemento origin;
+        Rope content;
+        int references = 1;
+        long orphanedBytes;
+
+        Entry(long hash, EditorMemento origin) {
+            this.hash = hash;
+            this.length = origin.getLength();
+            this.origin = origin;
+        }
+
+        Rope content() {
+            if (content == null) {
+                content = origin.getRope();
+            }
+            return content;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package MementoPattern;
+
+// Reference counting in ContentStore: a memento interned twice is held
+// twice, so releasing it once must leave its content stored for the other
+// holder and for identical states that come later.
+public class ContentStoreTest {
+    private static int failures;
+
+    public static void main(String[] args) {
+        internTwiceReleaseOnce();
+        pushTwicePopOnce();
+        System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+    }
+
+    private static void internTwiceReleaseOnce() {
+        ContentStore store = new ContentStore();
+        EditorMemento memento = new EditorMemento("shared text");
+        EditorMemento held = store.intern(memento);
+        check("re-intern returns the held memento", store.intern(held) == held);
+        store.release(held);
+        check("content still stored after one release", store.size() == 1);
+        EditorMemento identical = store.intern(new EditorMemento("shared text"));
+        check("identical state shares the stored rope", identical.getRope() == held.getRope());
+        store.release(identical);
+        store.release(held);
+        check("content dropped after the last release", store.size() == 0);
+    }
+
+    // The same through History, including its byte accounting.
+    private static void pushTwicePopOnce() {
+        History history = new History();
+        EditorMemento memento = new EditorMemento("pushed twice");
+        history.push(memento);
+        history.push(memento);
+        long oneCopy = memento.getRetainedBytes();
+        check("pop returns the pushed memento", history.pop() == memento);
+        check("one copy still charged", history.getRetainedBytes() == oneCopy);
+        check("the other copy is still there", history.pop().getContent().equals("pushed twice"));
+        check("nothing charged once empty", history.getRetainedBytes() == 0);
+    }
+
+    private static void check(String description, boolean passed) {
+        System.out.println((passed ? "ok    " : "FAILED ") + description);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
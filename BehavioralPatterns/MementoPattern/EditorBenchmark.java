@@ -0,0 +1,81 @@
+package MementoPattern;
+
+import java.util.Random;
+
+public class EditorBenchmark {
+    private static final int DOCUMENT_CHARS = 4 * 1024 * 1024;
+    private static final int EDITS = 200_000;
+    private static final int EDITS_PER_SAVE = 10;
+    private static final int STRING_EDITS = 2_000;
+    private static final int RESTORES = 1_000;
+
+    public static void main(String[] args) {
+        String document = randomText(new Random(42), DOCUMENT_CHARS);
+        System.out.printf("Document: %,d chars, %,d edits, save every %d edits%n%n",
+                DOCUMENT_CHARS, EDITS, EDITS_PER_SAVE);
+
+        benchmarkStringCopies(document);
+        benchmarkRopeEditor(document);
+    }
+
+    // What a String-backed editor pays: every edit copies the whole document.
+    private static void benchmarkStringCopies(String document) {
+        Random random = new Random(7);
+        String content = document;
+        long start = System.nanoTime();
+        for (int i = 0; i < STRING_EDITS; i++) {
+            int position = random.nextInt(content.length());
+            content = content.substring(0, position) + "edit" + content.substring(position);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("String copy:  %,10.0f edits/s  (%,d edits)%n",
+                STRING_EDITS / (elapsed / 1e9), STRING_EDITS);
+    }
+
+    private static void benchmarkRopeEditor(String document) {
+        Random random = new Random(7);
+        TextEditor editor = new TextEditor();
+        editor.write(document);
+        History history = new History();
+        EditorMemento[] saved = new EditorMemento[EDITS / EDITS_PER_SAVE];
+
+        long saveNanos = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < EDITS; i++) {
+            int position = random.nextInt(editor.length());
+            if (random.nextInt(4) == 0) {
+                editor.delete(position, Math.min(editor.length(), position + 1 + random.nextInt(16)));
+            } else {
+                editor.insert(position, "edit" + i);
+            }
+            if ((i + 1) % EDITS_PER_SAVE == 0) {
+                long saveStart = System.nanoTime();
+                EditorMemento memento = editor.save();
+                saveNanos += System.nanoTime() - saveStart;
+                history.push(memento);
+                saved[i / EDITS_PER_SAVE] = memento;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("Rope editor:  %,10.0f edits/s  (%,d edits, %,d saves, avg save %,d ns)%n",
+                EDITS / (elapsed / 1e9), EDITS, saved.length, saveNanos / saved.length);
+        System.out.printf("History:      %,d entries, %,d KB accounted (budget %,d KB)%n",
+                history.size(), history.getRetainedBytes() / 1024, history.getBudgetBytes() / 1024);
+
+        long restoreStart = System.nanoTime();
+        for (int i = 0; i < RESTORES; i++) {
+            editor.restore(saved[random.nextInt(saved.length)]);
+        }
+        long restoreElapsed = System.nanoTime() - restoreStart;
+        System.out.printf("Restore:      %,d ns avg over %,d random mementos%n",
+                restoreElapsed / RESTORES, RESTORES);
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(i % 64 == 63 ? '\n' : (char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
@@ -1,13 +1,224 @@
 package MementoPattern;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 public class EditorMemento {
-    private final String content;
+    // Rough per-object costs used for history budgeting.
+    private static final int MEMENTO_OVERHEAD = 48;
+    private static final int ROPE_OVERHEAD = 40;
+
+    // A checkpoint has no base and holds the whole content in `inserted`,
+    // sharing the editor's rope rather than copying it. A delta keeps
+    // `prefixLength` leading and `suffixLength` trailing chars of its base
+    // and replaces everything between them with `inserted`. The encoding
+    // never changes once created; caretakers that re-encode a state swap in
+    // a new memento with the same content.
+    private final EditorMemento base;
+    private final int prefixLength;
+    private final int suffixLength;
+    private final Rope inserted;
+    private final int length;
+    private final int depth;
+    // Hashed on first use, i.e. when a caretaker interns the memento, so
+    // save() never pays for it. Until then `hashSource` is the full rope the
+    // memento was made from, whose unchanged nodes already carry hashes.
+    private long contentHash;
+    private boolean hashed;
+    private Rope hashSource;
+    private int span = 1;
+    private long retainedBytes;
+    // Bound on rope bytes allocated by the edits since the previous save,
+    // i.e. what this memento adds on top of its predecessor in History.
+    private long editBytes;
 
     public EditorMemento(String content) {
-        this.content = content;
+        this(Rope.of(content));
+    }
+
+    EditorMemento(Rope content) {
+        this(content, 2L * content.length());
+    }
+
+    EditorMemento(Rope content, long editBytes) {
+        this(null, 0, 0, content, content.length(), content, 0);
+        this.editBytes = editBytes;
+        charge();
+    }
+
+    private EditorMemento(EditorMemento base, int prefixLength, int suffixLength,
+                          Rope inserted, int length, Rope hashSource, int depth) {
+        this.base = base;
+        this.prefixLength = prefixLength;
+        this.suffixLength = suffixLength;
+        this.inserted = inserted;
+        this.length = length;
+        this.hashSource = hashSource;
+        this.depth = depth;
+        this.retainedBytes = MEMENTO_OVERHEAD + ROPE_OVERHEAD + 2L * inserted.length();
+    }
+
+    // Scattered edits make the dirty span wide, but most of it is leaves the
+    // base already holds, so a delta is charged for its edits instead. The
+    // editor passes in its full rope to hash later.
+    static EditorMemento delta(EditorMemento base, int prefixLength, int suffixLength, Rope inserted,
+                               Rope content, long editBytes) {
+        EditorMemento memento = new EditorMemento(base, prefixLength, suffixLength, inserted,
+                prefixLength + inserted.length() + suffixLength, content, base.depth + 1);
+        memento.editBytes = editBytes;
+        memento.charge();
+        return memento;
     }
 
     public String getContent() {
+        return getRope().toString();
+    }
+
+    // Replays deltas from the nearest checkpoint; each step is a couple of
+    // O(log n) rope splices, so no intermediate full copies are made.
+    Rope getRope() {
+        Deque<EditorMemento> chain = new ArrayDeque<>();
+        EditorMemento checkpoint = this;
+        while (checkpoint.base != null) {
+            chain.push(checkpoint);
+            checkpoint = checkpoint.base;
+        }
+        Rope content = checkpoint.inserted;
+        while (!chain.isEmpty()) {
+            content = chain.pop().applyTo(content);
+        }
         return content;
     }
+
+    public boolean isCheckpoint() {
+        return base == null;
+    }
+
+    boolean holdsFullCopy() {
+        return base == null && editBytes >= 2L * length;
+    }
+
+    // Number of deltas between this memento and its checkpoint.
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    long getContentHash() {
+        if (!hashed) {
+            contentHash = (hashSource != null ? hashSource : getRope()).contentHash();
+            hashSource = null;
+            hashed = true;
+        }
+        return contentHash;
+    }
+
+    // Approximate heap bytes held by this memento itself, excluding its base
+    // and any rope leaves it shares with its predecessor in History.
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    // Number of original saves this memento stands for after History merged
+    // older neighbours into it.
+    public int getSpan() {
+        return span;
+    }
+
+    EditorMemento getBase() {
+        return base;
+    }
+
+    boolean dependsOn(EditorMemento other) {
+        for (EditorMemento m = this; m != null; m = m.base) {
+            if (m == other) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Estimated bytes given back if `older` is dropped and this memento
+    // takes over its edits.
+    long savingsFromAbsorbing(EditorMemento older) {
+        long merged = MEMENTO_OVERHEAD + ROPE_OVERHEAD + Math.min(2L * length, editBytes + older.editBytes);
+        return older.retainedBytes + retainedBytes - merged;
+    }
+
+    void absorb(EditorMemento older) {
+        span += older.span;
+        if (base != older) {
+            editBytes += older.editBytes;
+            charge();
+        }
+    }
+
+    // A checkpoint over a rope another memento already stores, so it costs
+    // no more than the object itself.
+    EditorMemento sharing(Rope content) {
+        EditorMemento shared = new EditorMemento(null, 0, 0, content, length, null, 0);
+        shared.inheritHash(this);
+        shared.span = span;
+        shared.charge();
+        return shared;
+    }
+
+    // The same content encoded against a different base, or as a checkpoint
+    // when newBase is null, so the old base can be released.
+    EditorMemento rebasedOnto(EditorMemento newBase) {
+        long edits = editBytes;
+        if (base != null && base.base == newBase) {
+            edits += base.editBytes;
+        }
+        Rope content = getRope();
+        EditorMemento rebased;
+        if (newBase == null) {
+            rebased = new EditorMemento(null, 0, 0, content, length, null, 0);
+        } else {
+            Rope baseContent = newBase.getRope();
+            int prefix = Rope.commonPrefix(baseContent, content);
+            int suffix = Rope.commonSuffix(baseContent, content, prefix);
+            rebased = new EditorMemento(newBase, prefix, suffix, content.substring(prefix, length - suffix),
+                    length, null, newBase.depth + 1);
+        }
+        rebased.inheritHash(this);
+        rebased.span = span;
+        rebased.editBytes = edits;
+        rebased.charge();
+        return rebased;
+    }
+
+    // The same delta over a replacement for its base that has the base's
+    // content, so only the depth changes.
+    EditorMemento withBase(EditorMemento replacement) {
+        EditorMemento moved = new EditorMemento(replacement, prefixLength, suffixLength, inserted,
+                length, null, replacement.depth + 1);
+        moved.inheritHash(this);
+        moved.span = span;
+        moved.editBytes = editBytes;
+        moved.retainedBytes = retainedBytes;
+        return moved;
+    }
+
+    private void inheritHash(EditorMemento other) {
+        if (other.hashed) {
+            contentHash = other.contentHash;
+            hashed = true;
+        } else {
+            hashSource = other.hashSource;
+        }
+    }
+
+    private void charge() {
+        retainedBytes = MEMENTO_OVERHEAD + ROPE_OVERHEAD + Math.min(2L * inserted.length(), editBytes);
+    }
+
+    private Rope applyTo(Rope baseContent) {
+        return baseContent.substring(0, prefixLength)
+                .concat(inserted)
+                .concat(baseContent.substring(baseContent.length() - suffixLength, baseContent.length()));
+    }
 }
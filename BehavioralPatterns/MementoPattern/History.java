@@ -1,20 +1,344 @@
 package MementoPattern;
 
-import java.util.Stack;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
-public class History {
-    private Stack<EditorMemento> states = new Stack<>();
+public class History implements AutoCloseable {
+    public static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+    // Demoting checkpoints links delta chains together; no demotion may make
+    // restoring a held state replay more deltas than this.
+    static final int MAX_CHAIN_DEPTH = 2 * TextEditor.DEFAULT_CHECKPOINT_INTERVAL;
 
+    private final Deque<EditorMemento> states = new ArrayDeque<>();
+    private final ContentStore contents = new ContentStore();
+    private final long budgetBytes;
+    private long retainedBytes;
+    // With a spill file, states beyond the newest `hotEntries` (or beyond the
+    // budget) go to disk instead of being thinned out, each as an edit
+    // against the state spilled before it, with a full checkpoint every
+    // SPILL_CHECKPOINT_INTERVAL records. Encoding runs on `spiller`, so
+    // push() only pays for rebuilding the oldest state's rope.
+    private static final int SPILL_CHECKPOINT_INTERVAL = 128;
+    private final int hotEntries;
+    private final SpillFile spillFile;
+    private final ExecutorService spiller;
+    // Each queued spill pins a rope, so push() waits once this many are
+    // queued. Running a spill inline instead would append it out of order.
+    private static final int MAX_QUEUED_SPILLS = 32;
+    private final Semaphore spillSlots = new Semaphore(MAX_QUEUED_SPILLS);
+    private final Deque<SpilledState> spilled = new ArrayDeque<>();
+    private Rope lastSpilled;
+    private int spilledSinceCheckpoint;
+
+    public History() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    public History(long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("History budget must be positive");
+        }
+        this.budgetBytes = budgetBytes;
+        this.hotEntries = Integer.MAX_VALUE;
+        this.spillFile = null;
+        this.spiller = null;
+    }
+
+    public History(long budgetBytes, Path spillPath, int hotEntries) throws IOException {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("History budget must be positive");
+        }
+        if (hotEntries < 1) {
+            throw new IllegalArgumentException("At least one entry must stay on the heap");
+        }
+        this.budgetBytes = budgetBytes;
+        this.hotEntries = hotEntries;
+        this.spillFile = new SpillFile(spillPath);
+        this.spiller = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "history-spill");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // A state identical to one already held, e.g. after toggling an edit
+    // back and forth, is stored as a reference to the existing copy.
     public void push(EditorMemento memento) {
-        states.push(memento);
+        memento = contents.intern(memento);
+        states.addLast(memento);
+        retainedBytes += memento.getRetainedBytes();
+        enforceBudget();
     }
 
+    // Once the heap entries are used up, older states are faulted back in
+    // from the spill file as full checkpoints.
     public EditorMemento pop() {
-        return states.pop();
+        if (states.isEmpty() && !spilled.isEmpty()) {
+            return new EditorMemento(faultIn());
+        }
+        EditorMemento memento = states.removeLast();
+        retainedBytes -= memento.getRetainedBytes();
+        retainedBytes += contents.release(memento);
+        return memento;
     }
 
     public boolean isEmpty() {
-        return states.isEmpty();
+        return states.isEmpty() && spilled.isEmpty();
+    }
+
+    public int size() {
+        return states.size() + spilled.size();
+    }
+
+    public int getDistinctStates() {
+        return contents.size();
+    }
+
+    public int getSpilledCount() {
+        return spilled.size();
+    }
+
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spillFile == null) {
+            return;
+        }
+        spiller.shutdown();
+        try {
+            spiller.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        spilled.clear();
+        spillFile.close();
+    }
+
+    private void enforceBudget() {
+        if (spillFile != null) {
+            while (states.size() > 1 && (states.size() > hotEntries || retainedBytes > budgetBytes)) {
+                spillOldest();
+            }
+            return;
+        }
+        // The newest state always stays, even if it alone is over budget.
+        while (retainedBytes > budgetBytes && states.size() > 1) {
+            if (!demoteOldCheckpoint()) {
+                drop(pickVictim());
+            }
+        }
+    }
+
+    // In the older half only the first entry needs to hold a full copy;
+    // later ones are re-encoded as deltas against their predecessor, which
+    // keeps every state while giving back almost a full document each.
+    // Checkpoints the editor captured already share its rope and are skipped,
+    // as are demotions that would push a chain past MAX_CHAIN_DEPTH.
+    private boolean demoteOldCheckpoint() {
+        int candidates = states.size() / 2;
+        EditorMemento previous = null;
+        int index = 0;
+        for (EditorMemento memento : states) {
+            if (index > candidates) {
+                break;
+            }
+            if (previous != null && memento.holdsFullCopy() && !previous.dependsOn(memento)
+                    && previous.getDepth() + 1 + deepestDependent(memento) <= MAX_CHAIN_DEPTH) {
+                Map<EditorMemento, EditorMemento> replaced = new IdentityHashMap<>();
+                replaced.put(memento, memento.rebasedOnto(previous));
+                replaceAll(replaced);
+                return true;
+            }
+            previous = memento;
+            index++;
+        }
+        return false;
     }
-}
 
+    // How many deltas the longest chain held on top of `checkpoint` has.
+    private int deepestDependent(EditorMemento checkpoint) {
+        int deepest = 0;
+        for (EditorMemento memento : states) {
+            if (memento.dependsOn(checkpoint)) {
+                deepest = Math.max(deepest, memento.getDepth() - checkpoint.getDepth());
+            }
+        }
+        return deepest;
+    }
+
+    // Recent history stays at full resolution. In the older half, the
+    // adjacent pair covering the fewest original saves is merged first, so
+    // the distant past thins out into ever coarser steps before anything
+    // is evicted outright. Mementos that share rope leaves free little when
+    // merged, though; if evicting the oldest state frees more, it goes.
+    private int pickVictim() {
+        int candidates = states.size() / 2;
+        if (candidates < 2) {
+            return 0;
+        }
+        int victim = 0;
+        int smallestSpan = Integer.MAX_VALUE;
+        EditorMemento previous = null;
+        EditorMemento victimMemento = null;
+        EditorMemento victimSuccessor = null;
+        EditorMemento oldest = null;
+        EditorMemento second = null;
+        int index = 0;
+        for (EditorMemento memento : states) {
+            if (index > candidates) {
+                break;
+            }
+            if (index == 1) {
+                oldest = previous;
+                second = memento;
+            }
+            if (previous != null && previous.getSpan() + memento.getSpan() < smallestSpan) {
+                smallestSpan = previous.getSpan() + memento.getSpan();
+                victim = index - 1;
+                victimMemento = previous;
+                victimSuccessor = memento;
+            }
+            previous = memento;
+            index++;
+        }
+        if (victimSuccessor.savingsFromAbsorbing(victimMemento) < second.savingsFromAbsorbing(oldest)) {
+            return 0;
+        }
+        return victim;
+    }
+
+    // Ropes are immutable, so both states can be handed to the background
+    // thread, which diffs and compresses them; the memento itself is
+    // released once its referrers are rebased.
+    private void spillOldest() {
+        EditorMemento oldest = states.removeFirst();
+        retainedBytes -= oldest.getRetainedBytes();
+        retainedBytes += contents.release(oldest);
+        Rope content = oldest.getRope();
+        rebaseReferrers(oldest);
+
+        boolean checkpoint = lastSpilled == null || spilledSinceCheckpoint + 1 >= SPILL_CHECKPOINT_INTERVAL;
+        Rope previous = checkpoint ? Rope.empty() : lastSpilled;
+        spillSlots.acquireUninterruptibly();
+        Future<Long> offset = spiller.submit(() -> {
+            try {
+                return spillFile.append(previous, content);
+            } finally {
+                spillSlots.release();
+            }
+        });
+        spilled.addLast(new SpilledState(offset, checkpoint));
+        spilledSinceCheckpoint = checkpoint ? 0 : spilledSinceCheckpoint + 1;
+        lastSpilled = content;
+    }
+
+    // Replays the newest spilled state from its checkpoint. Its record and
+    // anything after it in the file become free, so the next spill starts a
+    // fresh checkpoint rather than extending a chain it no longer knows.
+    private Rope faultIn() {
+        SpilledState newest = spilled.removeLast();
+        Deque<SpilledState> chain = new ArrayDeque<>();
+        chain.push(newest);
+        Iterator<SpilledState> older = spilled.descendingIterator();
+        while (!chain.peek().checkpoint) {
+            chain.push(older.next());
+        }
+        try {
+            Rope content = Rope.empty();
+            for (SpilledState state : chain) {
+                content = spillFile.apply(state.offset.get(), content);
+            }
+            spillFile.discardFrom(newest.offset.get());
+            lastSpilled = null;
+            return content;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading spilled history", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Spilling history failed", e.getCause());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Removes the memento at `index`; its newer neighbour takes over its span.
+    private void drop(int index) {
+        Iterator<EditorMemento> it = states.iterator();
+        for (int i = 0; i < index; i++) {
+            it.next();
+        }
+        EditorMemento victim = it.next();
+        it.remove();
+        retainedBytes -= victim.getRetainedBytes();
+        retainedBytes += contents.release(victim);
+        if (it.hasNext()) {
+            EditorMemento successor = it.next();
+            long before = successor.getRetainedBytes();
+            successor.absorb(victim);
+            retainedBytes += successor.getRetainedBytes() - before;
+        }
+        rebaseReferrers(victim);
+    }
+
+    // Anything encoded against a removed memento is re-encoded against its base.
+    private void rebaseReferrers(EditorMemento victim) {
+        Map<EditorMemento, EditorMemento> replaced = new IdentityHashMap<>();
+        for (EditorMemento memento : states) {
+            if (memento.getBase() == victim) {
+                replaced.put(memento, memento.rebasedOnto(victim.getBase()));
+            }
+        }
+        if (!replaced.isEmpty()) {
+            replaceAll(replaced);
+        }
+    }
+
+    // Swaps in the given replacements, then moves every delta whose base was
+    // replaced onto the replacement so its depth is recomputed. Bases are
+    // always older than their dependents, so one pass in order is enough.
+    private void replaceAll(Map<EditorMemento, EditorMemento> replaced) {
+        for (int i = states.size(); i > 0; i--) {
+            EditorMemento memento = states.removeFirst();
+            EditorMemento replacement = replaced.get(memento);
+            if (replacement == null && memento.getBase() != null && replaced.containsKey(memento.getBase())) {
+                replacement = memento.withBase(replaced.get(memento.getBase()));
+                replaced.put(memento, replacement);
+            }
+            if (replacement != null) {
+                retainedBytes += replacement.getRetainedBytes() - memento.getRetainedBytes();
+                contents.replace(memento, replacement);
+                memento = replacement;
+            }
+            states.addLast(memento);
+        }
+    }
+
+    private static final class SpilledState {
+        final Future<Long> offset;
+        final boolean checkpoint;
+
+        SpilledState(Future<Long> offset, boolean checkpoint) {
+            this.offset = offset;
+            this.checkpoint = checkpoint;
+        }
+    }
+}
@@ -20,6 +20,28 @@ public class Main {
 
         editor.restore(history.pop());
         System.out.println("After Undo: " + editor.getContent());
+
+        System.out.println("\n--- Undo tree ---");
+        UndoTree tree = new UndoTree();
+
+        editor.write("Draft");
+        tree.commit(editor.save());
+
+        editor.write("Draft v1");
+        long firstBranch = tree.commit(editor.save());
+
+        editor.restore(tree.undo());
+        System.out.println("After Undo: " + editor.getContent());
+
+        editor.write("Draft v2");
+        tree.commit(editor.save());
+        System.out.println("New branch: " + editor.getContent());
+
+        editor.restore(tree.jumpTo(firstBranch));
+        System.out.println("Jump to first branch: " + editor.getContent());
+
+        editor.restore(tree.undo());
+        editor.restore(tree.redo());
+        System.out.println("After Undo + Redo: " + editor.getContent());
     }
 }
-
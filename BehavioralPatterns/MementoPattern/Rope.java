@@ -0,0 +1,367 @@
+package MementoPattern;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Immutable, height-balanced rope. Edits copy only the O(log n) nodes on the
+// path they touch, so old versions share every untouched subtree.
+public final class Rope {
+    static final int MAX_LEAF = 512;
+
+    // Polynomial hash modulo the Mersenne prime 2^61 - 1. It is computed on
+    // first use and cached per node, and a node's hash is derived from its
+    // children's in O(1), so hashing a new version only costs the leaves and
+    // path nodes created since the last hashed version.
+    private static final long HASH_MODULUS = (1L << 61) - 1;
+    private static final long HASH_BASE = 0x1F2E3D4C5B6A79L;
+    private static final long[] LEAF_POWERS = new long[MAX_LEAF + 1];
+
+    private static final Rope EMPTY = new Rope("");
+
+    static {
+        LEAF_POWERS[0] = 1;
+        for (int i = 1; i <= MAX_LEAF; i++) {
+            LEAF_POWERS[i] = mulMod(LEAF_POWERS[i - 1], HASH_BASE);
+        }
+    }
+
+    private final String leaf;
+    private final Rope left;
+    private final Rope right;
+    private final int length;
+    private final int height;
+    private long hash;
+    // HASH_BASE^length, needed to shift the left child's hash past the right.
+    private long power;
+    private volatile boolean hashed;
+
+    private Rope(String leaf) {
+        this.leaf = leaf;
+        this.left = null;
+        this.right = null;
+        this.length = leaf.length();
+        this.height = 0;
+    }
+
+    private Rope(Rope left, Rope right) {
+        this.leaf = null;
+        this.left = left;
+        this.right = right;
+        this.length = left.length + right.length;
+        this.height = 1 + Math.max(left.height, right.height);
+    }
+
+    public static Rope empty() {
+        return EMPTY;
+    }
+
+    public static Rope of(String text) {
+        return build(text, 0, text.length());
+    }
+
+    private static Rope build(String text, int start, int end) {
+        if (end - start <= MAX_LEAF) {
+            return start == end ? EMPTY : new Rope(text.substring(start, end));
+        }
+        int leaves = (end - start + MAX_LEAF - 1) / MAX_LEAF;
+        int middle = start + (leaves / 2) * MAX_LEAF;
+        return new Rope(build(text, start, middle), build(text, middle, end));
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        Rope node = this;
+        while (node.leaf == null) {
+            if (index < node.left.length) {
+                node = node.left;
+            } else {
+                index -= node.left.length;
+                node = node.right;
+            }
+        }
+        return node.leaf.charAt(index);
+    }
+
+    public Rope concat(Rope other) {
+        if (other.length == 0) {
+            return this;
+        }
+        if (length == 0) {
+            return other;
+        }
+        return join(this, other);
+    }
+
+    public Rope substring(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+        }
+        return slice(start, end);
+    }
+
+    public Rope insert(int index, String text) {
+        return replace(index, index, text);
+    }
+
+    public Rope delete(int start, int end) {
+        return replace(start, end, "");
+    }
+
+    // Edits that fit inside one leaf only copy that leaf and its path, which
+    // keeps leaves large and untouched leaves shared with older versions.
+    public Rope replace(int start, int end, String text) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+        }
+        Rope local = replaceWithinLeaf(start, end, text);
+        if (local != null) {
+            return local;
+        }
+        return slice(0, start).concat(of(text)).concat(slice(end, length));
+    }
+
+    // Equal content always hashes equal regardless of tree shape; callers
+    // confirm a match with contentEquals.
+    public long contentHash() {
+        computeHash();
+        return hash;
+    }
+
+    public boolean contentEquals(Rope other) {
+        return this == other
+                || (length == other.length && contentHash() == other.contentHash()
+                    && commonPrefix(this, other) == length);
+    }
+
+    // Racing threads compute the same values; the volatile flag publishes them.
+    private void computeHash() {
+        if (hashed) {
+            return;
+        }
+        if (leaf != null) {
+            long h = 0;
+            for (int i = 0; i < leaf.length(); i++) {
+                h = addMod(mulMod(h, HASH_BASE), leaf.charAt(i));
+            }
+            hash = h;
+            power = leafPower(leaf.length());
+        } else {
+            left.computeHash();
+            right.computeHash();
+            hash = addMod(mulMod(left.hash, right.power), right.hash);
+            power = mulMod(left.power, right.power);
+        }
+        hashed = true;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public void appendTo(StringBuilder builder) {
+        if (leaf != null) {
+            builder.append(leaf);
+        } else {
+            left.appendTo(builder);
+            right.appendTo(builder);
+        }
+    }
+
+    List<String> leaves() {
+        List<String> leaves = new ArrayList<>();
+        collectLeaves(leaves);
+        return leaves;
+    }
+
+    private void collectLeaves(List<String> into) {
+        if (leaf != null) {
+            into.add(leaf);
+        } else {
+            left.collectLeaves(into);
+            right.collectLeaves(into);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (leaf != null) {
+            return leaf;
+        }
+        StringBuilder builder = new StringBuilder(length);
+        appendTo(builder);
+        return builder.toString();
+    }
+
+    // Leaves shared by both ropes at the same offset are skipped by identity,
+    // so comparing two versions of a document costs O(leaves + edit size)
+    // rather than O(chars).
+    static int commonPrefix(Rope a, Rope b) {
+        return commonRun(new LeafCursor(a, true), new LeafCursor(b, true), Math.min(a.length, b.length));
+    }
+
+    // Longest common suffix that does not overlap the first `prefix` chars.
+    static int commonSuffix(Rope a, Rope b, int prefix) {
+        return commonRun(new LeafCursor(a, false), new LeafCursor(b, false), Math.min(a.length, b.length) - prefix);
+    }
+
+    private static int commonRun(LeafCursor x, LeafCursor y, int limit) {
+        int matched = 0;
+        while (matched < limit) {
+            if (x.exhausted()) {
+                x.nextLeaf();
+            } else if (y.exhausted()) {
+                y.nextLeaf();
+            } else if (x.index == 0 && y.index == 0 && x.leaf == y.leaf) {
+                matched += x.leaf.length();
+                if (matched >= limit) {
+                    return limit;
+                }
+                x.nextLeaf();
+                y.nextLeaf();
+            } else if (x.current() == y.current()) {
+                x.index++;
+                y.index++;
+                matched++;
+            } else {
+                break;
+            }
+        }
+        return matched;
+    }
+
+    private Rope replaceWithinLeaf(int start, int end, String text) {
+        if (leaf != null) {
+            int newLength = length - (end - start) + text.length();
+            if (newLength > MAX_LEAF) {
+                return null;
+            }
+            return newLength == 0 ? EMPTY : new Rope(leaf.substring(0, start) + text + leaf.substring(end));
+        }
+        int split = left.length;
+        if (end <= split) {
+            Rope updated = left.replaceWithinLeaf(start, end, text);
+            return updated == null ? null : updated.concat(right);
+        }
+        if (start >= split) {
+            Rope updated = right.replaceWithinLeaf(start - split, end - split, text);
+            return updated == null ? null : left.concat(updated);
+        }
+        return null;
+    }
+
+    private Rope slice(int start, int end) {
+        if (start == 0 && end == length) {
+            return this;
+        }
+        if (start >= end) {
+            return EMPTY;
+        }
+        if (leaf != null) {
+            return new Rope(leaf.substring(start, end));
+        }
+        int split = left.length;
+        if (end <= split) {
+            return left.slice(start, end);
+        }
+        if (start >= split) {
+            return right.slice(start - split, end - split);
+        }
+        return left.slice(start, split).concat(right.slice(0, end - split));
+    }
+
+    // AVL join: descends the taller side until the heights are within one,
+    // then rotates on the way back up.
+    private static Rope join(Rope left, Rope right) {
+        if (left.leaf != null && right.leaf != null && left.length + right.length <= MAX_LEAF) {
+            return new Rope(left.leaf + right.leaf);
+        }
+        if (left.height > right.height + 1) {
+            return balance(left.left, join(left.right, right));
+        }
+        if (right.height > left.height + 1) {
+            return balance(join(left, right.left), right.right);
+        }
+        return new Rope(left, right);
+    }
+
+    private static Rope balance(Rope left, Rope right) {
+        if (left.height > right.height + 1) {
+            if (left.left.height >= left.right.height) {
+                return new Rope(left.left, new Rope(left.right, right));
+            }
+            return new Rope(new Rope(left.left, left.right.left), new Rope(left.right.right, right));
+        }
+        if (right.height > left.height + 1) {
+            if (right.right.height >= right.left.height) {
+                return new Rope(new Rope(left, right.left), right.right);
+            }
+            return new Rope(new Rope(left, right.left.left), new Rope(right.left.right, right.right));
+        }
+        return new Rope(left, right);
+    }
+
+    private static long leafPower(int length) {
+        if (length <= MAX_LEAF) {
+            return LEAF_POWERS[length];
+        }
+        long power = LEAF_POWERS[MAX_LEAF];
+        for (int i = MAX_LEAF; i < length; i++) {
+            power = mulMod(power, HASH_BASE);
+        }
+        return power;
+    }
+
+    private static long mulMod(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        long folded = (low & HASH_MODULUS) + ((low >>> 61) | (high << 3));
+        return addMod(folded, 0);
+    }
+
+    private static long addMod(long a, long b) {
+        long sum = a + b;
+        sum = (sum & HASH_MODULUS) + (sum >>> 61);
+        return sum >= HASH_MODULUS ? sum - HASH_MODULUS : sum;
+    }
+
+    private static final class LeafCursor {
+        private final Deque<Rope> pending = new ArrayDeque<>();
+        private final boolean forward;
+        private String leaf;
+        private int index;
+
+        private LeafCursor(Rope root, boolean forward) {
+            this.forward = forward;
+            descend(root);
+        }
+
+        private boolean exhausted() {
+            return index == leaf.length();
+        }
+
+        private char current() {
+            return forward ? leaf.charAt(index) : leaf.charAt(leaf.length() - 1 - index);
+        }
+
+        private void nextLeaf() {
+            descend(pending.pop());
+        }
+
+        private void descend(Rope node) {
+            while (node.leaf == null) {
+                pending.push(forward ? node.right : node.left);
+                node = forward ? node.left : node.right;
+            }
+            leaf = node.leaf;
+            index = 0;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package MementoPattern;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Append-only scratch file of Deflater-compressed edit scripts. Each record
+// is [int rawLength][int compressedLength][bytes] and rebuilds a state from
+// the previous one as a run of ops: [int offset][int length] copies a range
+// of the previous state, [-1][int charLength][UTF-16 chars] adds text. A
+// record against the empty rope is a checkpoint. Records are read back
+// through read-only mapped segments, so faulting one state in only touches
+// the pages that hold its chain.
+class SpillFile implements AutoCloseable {
+    private static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final int HEADER_BYTES = 8;
+    private static final int LITERAL = -1;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private long end;
+
+    SpillFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    // Encodes, compresses and appends `content` as an edit of `previous`,
+    // returning the record's offset.
+    synchronized long append(Rope previous, Rope content) throws IOException {
+        byte[] raw = encode(previous, content);
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] compressed = new byte[Math.max(64, raw.length / 4)];
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            size += deflater.deflate(compressed, size, compressed.length - size);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + size);
+        record.putInt(raw.length).putInt(size).put(compressed, 0, size).flip();
+        long offset = end;
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        end = offset + record.limit();
+        return offset;
+    }
+
+    synchronized Rope apply(long offset, Rope previous) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(copy(offset, HEADER_BYTES));
+        int rawLength = header.getInt();
+        int compressedLength = header.getInt();
+        byte[] compressed = copy(offset + HEADER_BYTES, compressedLength);
+
+        byte[] raw = new byte[rawLength];
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int size = 0;
+            while (size < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, size, rawLength - size);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated history record at offset " + offset);
+                }
+                size += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt history record at offset " + offset, e);
+        }
+        return decode(ByteBuffer.wrap(raw), previous);
+    }
+
+    // Undo consumes records newest-first, so once a record has been faulted
+    // back in, its space and everything after it is reused by later appends.
+    synchronized void discardFrom(long offset) {
+        end = Math.min(end, offset);
+    }
+
+    synchronized long size() {
+        return end;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        deflater.end();
+        inflater.end();
+        segments.clear();
+        channel.close();
+    }
+
+    // Scattered edits would make a single prefix/suffix span cover most of
+    // the document, so the script is built from leaves instead: leaves the
+    // two ropes share by identity become copies, everything else literals.
+    private static byte[] encode(Rope previous, Rope content) throws IOException {
+        Map<String, Integer> offsets = new IdentityHashMap<>();
+        int offset = 0;
+        for (String leaf : previous.leaves()) {
+            offsets.putIfAbsent(leaf, offset);
+            offset += leaf.length();
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        StringBuilder literal = new StringBuilder();
+        int copyStart = 0;
+        int copyLength = 0;
+        for (String leaf : content.leaves()) {
+            Integer at = offsets.get(leaf);
+            if (at == null) {
+                writeCopy(out, copyStart, copyLength);
+                copyLength = 0;
+                literal.append(leaf);
+            } else if (copyLength > 0 && copyStart + copyLength == at) {
+                copyLength += leaf.length();
+            } else {
+                writeCopy(out, copyStart, copyLength);
+                writeLiteral(out, literal);
+                copyStart = at;
+                copyLength = leaf.length();
+            }
+        }
+        writeCopy(out, copyStart, copyLength);
+        writeLiteral(out, literal);
+        return bytes.toByteArray();
+    }
+
+    private static void writeCopy(DataOutputStream out, int start, int length) throws IOException {
+        if (length > 0) {
+            out.writeInt(start);
+            out.writeInt(length);
+        }
+    }
+
+    private static void writeLiteral(DataOutputStream out, StringBuilder literal) throws IOException {
+        if (literal.length() > 0) {
+            // Raw chars rather than UTF-8: a run can start or end between
+            // the two halves of a surrogate pair, whichever leaf or copy
+            // holds the other half, and UTF-8 would replace a lone half.
+            out.writeInt(LITERAL);
+            out.writeInt(literal.length());
+            out.writeChars(literal.toString());
+            literal.setLength(0);
+        }
+    }
+
+    private static Rope decode(ByteBuffer ops, Rope previous) {
+        Rope content = Rope.empty();
+        while (ops.hasRemaining()) {
+            int start = ops.getInt();
+            int length = ops.getInt();
+            if (start == LITERAL) {
+                char[] text = new char[length];
+                ops.asCharBuffer().get(text);
+                ops.position(ops.position() + length * Character.BYTES);
+                content = content.concat(Rope.of(new String(text)));
+            } else {
+                content = content.concat(previous.substring(start, start + length));
+            }
+        }
+        return content;
+    }
+
+    private byte[] copy(long offset, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long position = offset + copied;
+            int index = (int) (position / SEGMENT_BYTES);
+            int within = (int) (position % SEGMENT_BYTES);
+            int chunk = Math.min(length - copied, SEGMENT_BYTES - within);
+            segment(index, within + chunk).get(within, bytes, copied, chunk);
+            copied += chunk;
+        }
+        return bytes;
+    }
+
+    // Segments are mapped lazily and remapped once the file has grown past
+    // what an earlier mapping covered.
+    private MappedByteBuffer segment(int index, int needed) throws IOException {
+        while (segments.size() <= index) {
+            segments.add(null);
+        }
+        MappedByteBuffer segment = segments.get(index);
+        if (segment == null || segment.capacity() < needed) {
+            long start = (long) index * SEGMENT_BYTES;
+            long length = Math.min(SEGMENT_BYTES, Math.max(end, channel.size()) - start);
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            segments.set(index, segment);
+        }
+        return segment;
+    }
+}
@@ -0,0 +1,70 @@
+package MementoPattern;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Saves a document made mostly of characters outside the Basic
+// Multilingual Plane, edited at arbitrary char positions so leaf and
+// literal boundaries keep falling between the two halves of a surrogate
+// pair, then undoes back through the spill file and checks every state
+// comes back char for char.
+public class SpillRoundTripTest {
+    private static final int SAVES = 2_000;
+    private static final int HOT_ENTRIES = 16;
+    private static final String[] ASTRAL = { "😀", "𝄞", "𠀋", "🌍" };
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(42);
+        Path spillPath = Files.createTempFile("history", ".spill");
+        TextEditor editor = new TextEditor();
+        editor.write("a" + astralText(random, 1_024));
+        List<String> expected = new ArrayList<>();
+        int mismatches = 0;
+        try (History history = new History(History.DEFAULT_BUDGET_BYTES, spillPath, HOT_ENTRIES)) {
+            for (int i = 0; i < SAVES; i++) {
+                history.push(editor.save());
+                expected.add(editor.getContent());
+                int position = random.nextInt(editor.length() + 1);
+                if (random.nextInt(3) == 0 && position < editor.length()) {
+                    editor.delete(position, Math.min(editor.length(), position + 1 + random.nextInt(40)));
+                } else {
+                    editor.insert(position, astralText(random, 1 + random.nextInt(20)));
+                }
+            }
+            System.out.printf("%,d saves of astral-plane text, %,d spilled%n", SAVES, history.getSpilledCount());
+            for (int i = expected.size() - 1; i >= 0; i--) {
+                editor.restore(history.pop());
+                String content = editor.getContent();
+                if (!content.equals(expected.get(i))) {
+                    if (mismatches == 0) {
+                        System.out.printf("state %d differs first at index %d%n", i, firstDifference(content, expected.get(i)));
+                    }
+                    mismatches++;
+                }
+            }
+        }
+        System.out.printf("%,d states restored, %,d mismatches%n", expected.size(), mismatches);
+    }
+
+    private static String astralText(Random random, int codePoints) {
+        StringBuilder text = new StringBuilder(codePoints * 2);
+        for (int i = 0; i < codePoints; i++) {
+            text.append(ASTRAL[random.nextInt(ASTRAL.length)]);
+        }
+        return text.toString();
+    }
+
+    private static int firstDifference(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+}
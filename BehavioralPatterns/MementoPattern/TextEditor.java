@@ -1,22 +1,100 @@
 package MementoPattern;
 
 public class TextEditor {
-    private String content;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 32;
 
+    private Rope content = Rope.empty();
+    private final int checkpointInterval;
+    private EditorMemento lastSaved;
+    // Everything before dirtyStart and the last cleanSuffix chars are
+    // unchanged since the last save, so save() never has to diff.
+    private int dirtyStart;
+    private int cleanSuffix;
+    // Upper bound on rope bytes allocated since the last save: each edit
+    // copies at most one leaf plus the text it adds.
+    private long unsavedBytes;
+
+    public TextEditor() {
+        this(DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    public TextEditor(int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be at least 1");
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    // Replaces the whole text, but only the span that actually differs is
+    // rebuilt so the rest stays shared with earlier mementos.
     public void write(String text) {
-        this.content = text;
+        Rope replacement = Rope.of(text);
+        int prefix = Rope.commonPrefix(content, replacement);
+        int suffix = Rope.commonSuffix(content, replacement, prefix);
+        int end = content.length() - suffix;
+        Rope updated = content.substring(0, prefix)
+                .concat(replacement.substring(prefix, replacement.length() - suffix))
+                .concat(content.substring(end, content.length()));
+        markDirty(prefix, end, replacement.length() - prefix - suffix);
+        content = updated;
+    }
+
+    public void insert(int index, String text) {
+        Rope updated = content.insert(index, text);
+        markDirty(index, index, text.length());
+        content = updated;
+    }
+
+    public void delete(int start, int end) {
+        Rope updated = content.delete(start, end);
+        markDirty(start, end, 0);
+        content = updated;
     }
 
     public String getContent() {
-        return content;
+        return content.toString();
+    }
+
+    public int length() {
+        return content.length();
     }
 
+    // A checkpoint just captures the current rope (O(1)); a delta captures
+    // the rope slice covering the dirty range (O(log n)). Either way the
+    // memento shares all unchanged text with the editor, so only the first
+    // save is charged for the whole document.
     public EditorMemento save() {
-        return new EditorMemento(content);
+        EditorMemento memento;
+        if (lastSaved == null) {
+            memento = new EditorMemento(content);
+        } else if (lastSaved.getDepth() + 1 >= checkpointInterval) {
+            memento = new EditorMemento(content, unsavedBytes);
+        } else {
+            int length = content.length();
+            int prefix = Math.min(dirtyStart, Math.min(length, lastSaved.getLength()));
+            int suffix = Math.min(cleanSuffix, Math.min(length, lastSaved.getLength()) - prefix);
+            memento = EditorMemento.delta(lastSaved, prefix, suffix, content.substring(prefix, length - suffix),
+                    content, unsavedBytes);
+        }
+        markSaved(memento);
+        return memento;
     }
 
     public void restore(EditorMemento memento) {
-        this.content = memento.getContent();
+        this.content = memento.getRope();
+        markSaved(memento);
     }
-}
 
+    private void markDirty(int start, int end, int insertedChars) {
+        dirtyStart = Math.min(dirtyStart, start);
+        cleanSuffix = Math.min(cleanSuffix, content.length() - end);
+        unsavedBytes += 2L * (Rope.MAX_LEAF + insertedChars);
+    }
+
+    private void markSaved(EditorMemento memento) {
+        lastSaved = memento;
+        dirtyStart = content.length();
+        cleanSuffix = content.length();
+        unsavedBytes = 0;
+    }
+}
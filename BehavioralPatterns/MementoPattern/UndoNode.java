@@ -0,0 +1,79 @@
+package MementoPattern;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class UndoNode {
+    private final long id;
+    private EditorMemento memento;
+    private UndoNode parent;
+    private final List<UndoNode> children = new ArrayList<>();
+    // The child redo() follows: the branch most recently entered from here.
+    private UndoNode activeChild;
+    private long lastVisited;
+
+    UndoNode(long id, EditorMemento memento, UndoNode parent) {
+        this.id = id;
+        this.memento = memento;
+        this.parent = parent;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public EditorMemento getMemento() {
+        return memento;
+    }
+
+    void setMemento(EditorMemento memento) {
+        this.memento = memento;
+    }
+
+    public UndoNode getParent() {
+        return parent;
+    }
+
+    public List<UndoNode> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    UndoNode getActiveChild() {
+        return activeChild;
+    }
+
+    long getLastVisited() {
+        return lastVisited;
+    }
+
+    void visit(long clock) {
+        lastVisited = clock;
+        markActive();
+    }
+
+    void markActive() {
+        if (parent != null) {
+            parent.activeChild = this;
+        }
+    }
+
+    void addChild(UndoNode child) {
+        children.add(child);
+    }
+
+    void removeChild(UndoNode child) {
+        children.remove(child);
+        if (activeChild == child) {
+            activeChild = children.isEmpty() ? null : children.get(children.size() - 1);
+        }
+    }
+
+    void detachFromParent() {
+        parent = null;
+    }
+
+    boolean isLeaf() {
+        return children.isEmpty();
+    }
+}
@@ -0,0 +1,189 @@
+package MementoPattern;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Caretaker that keeps every branch instead of a single undo stack: a new
+// save after an undo starts a sibling branch rather than discarding the
+// states it diverged from. Undo and redo follow parent and active-child
+// links in O(1), and any state still held can be reached by id.
+public class UndoTree {
+    // In commit order, so a memento's base always comes before it.
+    private final Map<Long, UndoNode> nodes = new LinkedHashMap<>();
+    // Nodes without children, the only ones that can go without
+    // disconnecting the tree.
+    private final Set<UndoNode> leaves = new LinkedHashSet<>();
+    private final ContentStore contents = new ContentStore();
+    private final long budgetBytes;
+    private long retainedBytes;
+    private UndoNode root;
+    private UndoNode current;
+    private long nextId;
+    private long clock;
+
+    public UndoTree() {
+        this(History.DEFAULT_BUDGET_BYTES);
+    }
+
+    public UndoTree(long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Undo tree budget must be positive");
+        }
+        this.budgetBytes = budgetBytes;
+    }
+
+    // Records a state as a child of the current one and makes it current.
+    public long commit(EditorMemento memento) {
+        memento = contents.intern(memento);
+        UndoNode node = new UndoNode(nextId++, memento, current);
+        if (current == null) {
+            root = node;
+        } else {
+            leaves.remove(current);
+            current.addChild(node);
+        }
+        nodes.put(node.getId(), node);
+        leaves.add(node);
+        retainedBytes += memento.getRetainedBytes();
+        step(node);
+        enforceBudget();
+        return node.getId();
+    }
+
+    public EditorMemento undo() {
+        if (!canUndo()) {
+            throw new IllegalStateException("Nothing to undo");
+        }
+        step(current.getParent());
+        return current.getMemento();
+    }
+
+    // Follows the branch most recently left by undo or entered by a jump.
+    public EditorMemento redo() {
+        if (!canRedo()) {
+            throw new IllegalStateException("Nothing to redo");
+        }
+        step(current.getActiveChild());
+        return current.getMemento();
+    }
+
+    public EditorMemento jumpTo(long id) {
+        UndoNode node = nodes.get(id);
+        if (node == null) {
+            throw new NoSuchElementException("No state with id " + id);
+        }
+        moveTo(node);
+        return node.getMemento();
+    }
+
+    public boolean canUndo() {
+        return current != null && current.getParent() != null;
+    }
+
+    public boolean canRedo() {
+        return current != null && current.getActiveChild() != null;
+    }
+
+    public UndoNode getCurrent() {
+        return current;
+    }
+
+    public UndoNode getRoot() {
+        return root;
+    }
+
+    public UndoNode getNode(long id) {
+        return nodes.get(id);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    // The path from the root to `current` is always active. Stepping to the
+    // parent, the active child or a new child keeps it that way by marking
+    // only the node itself.
+    private void step(UndoNode node) {
+        current = node;
+        node.visit(++clock);
+    }
+
+    // A jump re-points every ancestor up to the root, so redo from any of
+    // them leads back here. An ancestor that is already active can still sit
+    // on another branch of a higher node, so the walk never stops early.
+    private void moveTo(UndoNode node) {
+        step(node);
+        for (UndoNode ancestor = node.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            ancestor.markActive();
+        }
+    }
+
+    private void enforceBudget() {
+        while (retainedBytes > budgetBytes && nodes.size() > 1) {
+            evict(pickVictim());
+        }
+    }
+
+    // Abandoned branches are pruned first, least recently visited leaf
+    // first. Once only the current line is left, its oldest state goes.
+    private UndoNode pickVictim() {
+        UndoNode victim = null;
+        for (UndoNode leaf : leaves) {
+            if (leaf != current && (victim == null || leaf.getLastVisited() < victim.getLastVisited())) {
+                victim = leaf;
+            }
+        }
+        return victim != null ? victim : root;
+    }
+
+    private void evict(UndoNode node) {
+        EditorMemento memento = node.getMemento();
+        nodes.remove(node.getId());
+        leaves.remove(node);
+        retainedBytes -= memento.getRetainedBytes();
+        retainedBytes += contents.release(memento);
+
+        UndoNode parent = node.getParent();
+        if (parent != null) {
+            parent.removeChild(node);
+            if (parent.isLeaf()) {
+                leaves.add(parent);
+            }
+        } else {
+            root = node.getChildren().get(0);
+            root.detachFromParent();
+        }
+
+        // As in History, states encoded against the evicted memento are
+        // re-encoded against its base, and deltas on top of those are moved
+        // onto the replacements.
+        Map<EditorMemento, EditorMemento> replaced = new IdentityHashMap<>();
+        for (UndoNode other : nodes.values()) {
+            EditorMemento dependent = other.getMemento();
+            EditorMemento replacement = null;
+            if (dependent.getBase() == memento) {
+                replacement = dependent.rebasedOnto(memento.getBase());
+            } else if (dependent.getBase() != null && replaced.containsKey(dependent.getBase())) {
+                replacement = dependent.withBase(replaced.get(dependent.getBase()));
+            }
+            if (replacement != null) {
+                replaced.put(dependent, replacement);
+                retainedBytes += replacement.getRetainedBytes() - dependent.getRetainedBytes();
+                contents.replace(dependent, replacement);
+                other.setMemento(replacement);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+// Feeds readings as fast as one sensor thread can publish them to a fast,
+// a slow, a conflated slow and a statistics-style observer, then reports
+// how long ingestion took and how far behind each observer's lane fell.
+public class AsyncDispatchLoadTest {
+    private static final int READINGS = 500_000;
+    
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        try (AsyncDispatcher dispatcher = new AsyncDispatcher(threads)) {
+            WeatherData weatherData = new WeatherData(dispatcher);
+            CountingObserver fast = new CountingObserver(0);
+            CountingObserver slow = new CountingObserver(2_000);
+            CountingObserver conflated = new CountingObserver(2_000);
+            RunningAverage average = new RunningAverage();
+            weatherData.registerObserver(fast);
+            weatherData.registerObserver(slow);
+            weatherData.registerObserver(conflated, DeliveryMode.CONFLATED);
+            weatherData.registerObserver(average);
+            
+            long start = System.nanoTime();
+            for (int i = 0; i < READINGS; i++) {
+                weatherData.setMeasurements(20 + (i % 100) / 10.0f, 60 + i % 30, 1000 + i % 25);
+            }
+            long published = System.nanoTime() - start;
+            weatherData.flush();
+            long drained = System.nanoTime() - start;
+            
+            System.out.printf("%nPublished %,d readings in %,d ms (%,.0f readings/s) on %d dispatch threads;"
+                    + " all lanes drained after %,d ms%n",
+                    READINGS, published / 1_000_000, READINGS / (published / 1e9), threads, drained / 1_000_000);
+            report("fast", dispatcher.getLane(fast));
+            report("slow (2us/update)", dispatcher.getLane(slow));
+            report("slow, conflated", dispatcher.getLane(conflated));
+            report("running average", dispatcher.getLane(average));
+            System.out.printf("Average temperature: %.2f over %,d readings%n", average.get(), average.count);
+        }
+    }
+    
+    private static void report(String label, ObserverLane lane) {
+        System.out.printf("  %-18s delivered=%,d  skipped=%,d  blocked offers=%,d  max lag=%,d us%n",
+                label, lane.getDelivered(), lane.getSkipped(), lane.getBlockedOffers(), lane.getMaxLagNanos() / 1000);
+    }
+    
+    private static class CountingObserver implements Observer {
+        private final int spinNanos;
+        private long count;
+        
+        CountingObserver(int spinNanos) {
+            this.spinNanos = spinNanos;
+        }
+        
+        @Override
+        public void update(float temperature, float humidity, float pressure) {
+            long until = System.nanoTime() + spinNanos;
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+            count++;
+        }
+    }
+    
+    private static class RunningAverage implements Observer {
+        private double sum;
+        private long count;
+        
+        @Override
+        public void update(float temperature, float humidity, float pressure) {
+            sum += temperature;
+            count++;
+        }
+        
+        double get() {
+            return sum / count;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands readings to per-observer lanes that share one thread pool, so the
+// thread calling setMeasurements only enqueues and returns.
+public class AsyncDispatcher implements AutoCloseable {
+    public static final int DEFAULT_LANE_CAPACITY = 65_536;
+    
+    private final ExecutorService pool;
+    private final int laneCapacity;
+    // Keyed by identity: two observers that happen to be equal still get a
+    // lane each.
+    private final Map<LaneKey, ObserverLane> lanes = new ConcurrentHashMap<>();
+    // Removed lanes that still had readings queued, kept so flush() waits
+    // for them too. Dropped once they are idle.
+    private final Set<ObserverLane> draining = ConcurrentHashMap.newKeySet();
+    
+    public AsyncDispatcher() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public AsyncDispatcher(int threads) {
+        this(threads, DEFAULT_LANE_CAPACITY);
+    }
+    
+    // A LOSSLESS lane holds at most laneCapacity undelivered readings; past
+    // that, publishing waits for its observer.
+    public AsyncDispatcher(int threads, int laneCapacity) {
+        if (laneCapacity < 1) {
+            throw new IllegalArgumentException("Lane capacity must be positive, got " + laneCapacity);
+        }
+        this.laneCapacity = laneCapacity;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "observer-dispatch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    // Returns the observer's lane, so callers can offer to it directly.
+    // Lanes are only created here, so every lane has the mode its
+    // observer was registered with.
+    public ObserverLane register(Observer observer, DeliveryMode mode) {
+        return lanes.computeIfAbsent(new LaneKey(observer),
+                key -> new ObserverLane(observer, mode, pool, laneCapacity));
+    }
+    
+    // Readings already queued for the observer are still delivered.
+    public void remove(Observer observer) {
+        draining.removeIf(lane -> lane.getPending() == 0);
+        ObserverLane lane = lanes.remove(new LaneKey(observer));
+        if (lane != null && lane.getPending() > 0) {
+            draining.add(lane);
+        }
+    }
+    
+    // Blocks until every reading published so far has been delivered,
+    // including to observers removed since.
+    public void flush() throws InterruptedException {
+        for (ObserverLane lane : lanes.values()) {
+            lane.awaitIdle();
+        }
+        for (ObserverLane lane : draining) {
+            lane.awaitIdle();
+        }
+        draining.removeIf(lane -> lane.getPending() == 0);
+    }
+    
+    public ObserverLane getLane(Observer observer) {
+        return lanes.get(new LaneKey(observer));
+    }
+    
+    public Collection<ObserverLane> getLanes() {
+        return Collections.unmodifiableCollection(lanes.values());
+    }
+    
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static final class LaneKey {
+        private final Observer observer;
+        
+        LaneKey(Observer observer) {
+            this.observer = observer;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof LaneKey && ((LaneKey) other).observer == observer;
+        }
+        
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(observer);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+// Observer that takes readings in bulk from a MeasurementRing. The batch is
+// a reused view over the ring's arrays and is only valid during the call.
+public interface BatchObserver {
+    void onBatch(MeasurementBatch batch);
+}
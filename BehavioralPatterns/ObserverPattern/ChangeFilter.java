@@ -0,0 +1,65 @@
+// Decides centrally, in the subject, whether a reading is worth delivering
+// to an observer. A field with a threshold passes when it has moved by more
+// than that threshold since the last reading the observer was given; fields
+// without one are ignored. The first reading always passes.
+public final class ChangeFilter {
+    public static final ChangeFilter ALWAYS = new ChangeFilter(Float.NaN, Float.NaN, Float.NaN);
+    
+    private final float temperatureDelta;
+    private final float humidityDelta;
+    private final float pressureDelta;
+    
+    private ChangeFilter(float temperatureDelta, float humidityDelta, float pressureDelta) {
+        this.temperatureDelta = temperatureDelta;
+        this.humidityDelta = humidityDelta;
+        this.pressureDelta = pressureDelta;
+    }
+    
+    public static ChangeFilter temperature(float delta) {
+        return new ChangeFilter(checked(delta), Float.NaN, Float.NaN);
+    }
+    
+    public static ChangeFilter humidity(float delta) {
+        return new ChangeFilter(Float.NaN, checked(delta), Float.NaN);
+    }
+    
+    public static ChangeFilter pressure(float delta) {
+        return new ChangeFilter(Float.NaN, Float.NaN, checked(delta));
+    }
+    
+    // Passes when either filter would; the smaller threshold wins for a
+    // field both watch.
+    public ChangeFilter or(ChangeFilter other) {
+        if (this == ALWAYS || other == ALWAYS) {
+            return ALWAYS;
+        }
+        return new ChangeFilter(tighter(temperatureDelta, other.temperatureDelta),
+                tighter(humidityDelta, other.humidityDelta),
+                tighter(pressureDelta, other.pressureDelta));
+    }
+    
+    boolean passes(float lastTemperature, float lastHumidity, float lastPressure,
+                   float temperature, float humidity, float pressure) {
+        return this == ALWAYS
+                || moved(temperatureDelta, lastTemperature, temperature)
+                || moved(humidityDelta, lastHumidity, humidity)
+                || moved(pressureDelta, lastPressure, pressure);
+    }
+    
+    // A NaN threshold never fires; a NaN last value (nothing delivered yet)
+    // always does.
+    private static boolean moved(float delta, float last, float value) {
+        return !Float.isNaN(delta) && !(Math.abs(value - last) <= delta);
+    }
+    
+    private static float tighter(float a, float b) {
+        return Float.isNaN(a) ? b : Float.isNaN(b) ? a : Math.min(a, b);
+    }
+    
+    private static float checked(float delta) {
+        if (!(delta >= 0)) {
+            throw new IllegalArgumentException("Change threshold must be non-negative: " + delta);
+        }
+        return delta;
+    }
+}
@@ -0,0 +1,8 @@
+// How an asynchronous observer receives readings. LOSSLESS delivers every
+// reading in order; CONFLATED keeps only the newest undelivered one, so a
+// slow observer always catches up to the present and the readings it never
+// saw are counted instead.
+public enum DeliveryMode {
+    LOSSLESS,
+    CONFLATED
+}
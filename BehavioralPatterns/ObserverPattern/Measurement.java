@@ -0,0 +1,43 @@
+// One reading as handed to asynchronous observer lanes. A single instance
+// is shared by every lane, so publishing costs one allocation per reading
+// rather than one per observer. Readings from a StationRegistry carry the
+// id of the station that sent them; a single WeatherData leaves it null.
+public final class Measurement {
+    private final String stationId;
+    private final float temperature;
+    private final float humidity;
+    private final float pressure;
+    private final long publishedNanos;
+    
+    public Measurement(float temperature, float humidity, float pressure, long publishedNanos) {
+        this(null, temperature, humidity, pressure, publishedNanos);
+    }
+    
+    public Measurement(String stationId, float temperature, float humidity, float pressure, long publishedNanos) {
+        this.stationId = stationId;
+        this.temperature = temperature;
+        this.humidity = humidity;
+        this.pressure = pressure;
+        this.publishedNanos = publishedNanos;
+    }
+    
+    public String getStationId() {
+        return stationId;
+    }
+    
+    public float getTemperature() {
+        return temperature;
+    }
+    
+    public float getHumidity() {
+        return humidity;
+    }
+    
+    public float getPressure() {
+        return pressure;
+    }
+    
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+}
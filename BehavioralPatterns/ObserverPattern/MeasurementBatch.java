@@ -0,0 +1,49 @@
+// Flyweight over a run of ring slots. Each RingConsumer owns one and points
+// it at the next run of readings, so reading a batch allocates nothing.
+public final class MeasurementBatch {
+    private final float[] temperatures;
+    private final float[] humidities;
+    private final float[] pressures;
+    private final int mask;
+    private long firstSequence;
+    private int size;
+    
+    MeasurementBatch(float[] temperatures, float[] humidities, float[] pressures) {
+        this.temperatures = temperatures;
+        this.humidities = humidities;
+        this.pressures = pressures;
+        this.mask = temperatures.length - 1;
+    }
+    
+    void reset(long firstSequence, int size) {
+        this.firstSequence = firstSequence;
+        this.size = size;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public long getSequence(int index) {
+        return firstSequence + index;
+    }
+    
+    public float getTemperature(int index) {
+        return temperatures[slot(index)];
+    }
+    
+    public float getHumidity(int index) {
+        return humidities[slot(index)];
+    }
+    
+    public float getPressure(int index) {
+        return pressures[slot(index)];
+    }
+    
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for batch of " + size);
+        }
+        return (int) (firstSequence + index) & mask;
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Single-producer, multi-consumer ring of readings in preallocated primitive
+// arrays. The producer writes a slot and then publishes its sequence on
+// `cursor`; each consumer tracks the last sequence it finished, and the
+// producer never laps the slowest one. Nothing is allocated per reading.
+public class MeasurementRing {
+    private final float[] temperatures;
+    private final float[] humidities;
+    private final float[] pressures;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private volatile RingConsumer[] consumers = new RingConsumer[0];
+    // Producer-only state: the next sequence to write, and the slowest
+    // consumer position last seen, so the gate is only re-read on a wrap.
+    private long next;
+    private long cachedGate = -1;
+    
+    public MeasurementRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two, got " + capacity);
+        }
+        this.temperatures = new float[capacity];
+        this.humidities = new float[capacity];
+        this.pressures = new float[capacity];
+        this.mask = capacity - 1;
+    }
+    
+    // Must only be called from one thread. Blocks while the ring is full.
+    public long publish(float temperature, float humidity, float pressure) {
+        long sequence = next;
+        long wrapPoint = sequence - temperatures.length;
+        if (wrapPoint > cachedGate) {
+            long gate;
+            while (wrapPoint > (gate = slowestConsumer(sequence - 1))) {
+                LockSupport.parkNanos(1_000);
+            }
+            cachedGate = gate;
+        }
+        int slot = (int) sequence & mask;
+        temperatures[slot] = temperature;
+        humidities[slot] = humidity;
+        pressures[slot] = pressure;
+        next = sequence + 1;
+        cursor.lazySet(sequence);
+        return sequence;
+    }
+    
+    // The consumer starts after the latest published reading.
+    public synchronized RingConsumer subscribe(BatchObserver observer) {
+        RingConsumer consumer = new RingConsumer(this, observer, cursor.get());
+        RingConsumer[] updated = Arrays.copyOf(consumers, consumers.length + 1);
+        updated[consumers.length] = consumer;
+        consumers = updated;
+        return consumer;
+    }
+    
+    public synchronized void unsubscribe(RingConsumer consumer) {
+        consumer.stop();
+        RingConsumer[] current = consumers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == consumer) {
+                RingConsumer[] updated = new RingConsumer[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                consumers = updated;
+                return;
+            }
+        }
+    }
+    
+    // Waits until every consumer has processed everything published so far.
+    public void awaitConsumers() throws InterruptedException {
+        long target = cursor.get();
+        while (slowestConsumer(target) < target) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(10_000);
+        }
+    }
+    
+    public int getCapacity() {
+        return temperatures.length;
+    }
+    
+    public long getCursor() {
+        return cursor.get();
+    }
+    
+    MeasurementBatch newBatchView() {
+        return new MeasurementBatch(temperatures, humidities, pressures);
+    }
+    
+    private long slowestConsumer(long fallback) {
+        long slowest = fallback;
+        for (RingConsumer consumer : consumers) {
+            slowest = Math.min(slowest, consumer.getSequence());
+        }
+        return slowest;
+    }
+}
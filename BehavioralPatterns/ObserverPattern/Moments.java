@@ -0,0 +1,50 @@
+// Count, mean and sum of squared deviations, kept with Welford's update and
+// combined with Chan et al.'s pairwise formula, so panes can be merged into
+// a window total without revisiting samples.
+final class Moments {
+    private long count;
+    private double mean;
+    private double m2;
+    
+    void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+    
+    void merge(Moments other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        count = total;
+    }
+    
+    void copyFrom(Moments other) {
+        count = other.count;
+        mean = other.mean;
+        m2 = other.m2;
+    }
+    
+    void clear() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+    }
+    
+    long getCount() {
+        return count;
+    }
+    
+    double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+    
+    double getVariance() {
+        return count < 2 ? 0 : m2 / (count - 1);
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Serial executor for one observer on top of a shared pool: readings are
+// delivered in publish order and never concurrently, but a lane only holds
+// a pool thread while it has work, so a slow observer delays nobody else.
+public class ObserverLane implements Runnable {
+    // Readings delivered per turn before the lane yields its pool thread.
+    private static final int BATCH = 256;
+    
+    private final Observer observer;
+    private final DeliveryMode mode;
+    private final Executor pool;
+    // LOSSLESS lanes queue every reading; CONFLATED lanes only keep the
+    // newest one and count the readings it replaced.
+    private final Queue<Measurement> queue = new ConcurrentLinkedQueue<>();
+    // Free slots in a LOSSLESS queue. A full lane makes offer() wait for the
+    // observer instead of growing without bound, so an observer must not
+    // publish to a subject that feeds its own lane.
+    private final Semaphore space;
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicReference<Measurement> latest = new AtomicReference<>();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong pending = new AtomicLong();
+    private final Object idle = new Object();
+    // Written only by the thread currently running the lane.
+    private volatile long delivered;
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+    
+    ObserverLane(Observer observer, DeliveryMode mode, Executor pool, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Lane capacity must be positive, got " + capacity);
+        }
+        this.observer = observer;
+        this.mode = mode;
+        this.pool = pool;
+        this.space = mode == DeliveryMode.LOSSLESS ? new Semaphore(capacity) : null;
+    }
+    
+    void offer(Measurement measurement) {
+        if (mode == DeliveryMode.CONFLATED) {
+            if (latest.getAndSet(measurement) == null) {
+                pending.incrementAndGet();
+            } else {
+                skipped.incrementAndGet();
+            }
+        } else {
+            if (!space.tryAcquire()) {
+                blocked.incrementAndGet();
+                space.acquireUninterruptibly();
+            }
+            pending.incrementAndGet();
+            queue.add(measurement);
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            pool.execute(this);
+        }
+    }
+    
+    @Override
+    public void run() {
+        Measurement measurement;
+        for (int i = 0; i < BATCH && (measurement = next()) != null; i++) {
+            deliver(measurement);
+        }
+        scheduled.set(false);
+        // A reading offered after the last poll but before the flag was
+        // cleared would otherwise wait for the next offer.
+        if (hasWork() && scheduled.compareAndSet(false, true)) {
+            pool.execute(this);
+        }
+    }
+    
+    private Measurement next() {
+        return mode == DeliveryMode.CONFLATED ? latest.getAndSet(null) : queue.poll();
+    }
+    
+    private boolean hasWork() {
+        return mode == DeliveryMode.CONFLATED ? latest.get() != null : !queue.isEmpty();
+    }
+    
+    private void deliver(Measurement measurement) {
+        try {
+            observer.update(measurement.getTemperature(), measurement.getHumidity(), measurement.getPressure());
+        } catch (RuntimeException e) {
+            System.err.println("Observer " + observer.getClass().getSimpleName() + " failed: " + e);
+        }
+        long lag = System.nanoTime() - measurement.getPublishedNanos();
+        lastLagNanos = lag;
+        if (lag > maxLagNanos) {
+            maxLagNanos = lag;
+        }
+        delivered++;
+        if (space != null) {
+            space.release();
+        }
+        if (pending.decrementAndGet() == 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+    
+    void awaitIdle() throws InterruptedException {
+        synchronized (idle) {
+            while (pending.get() > 0) {
+                idle.wait();
+            }
+        }
+    }
+    
+    public Observer getObserver() {
+        return observer;
+    }
+    
+    // Readings published to this observer but not yet delivered.
+    public long getPending() {
+        return pending.get();
+    }
+    
+    public DeliveryMode getMode() {
+        return mode;
+    }
+    
+    public long getDelivered() {
+        return delivered;
+    }
+    
+    // Readings a conflating lane replaced before the observer got to them.
+    public long getSkipped() {
+        return skipped.get();
+    }
+    
+    // Offers that found a LOSSLESS lane full and had to wait.
+    public long getBlockedOffers() {
+        return blocked.get();
+    }
+    
+    // Time from setMeasurements to update() for the latest delivery.
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+    
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return observer.getClass().getSimpleName() + ": delivered=" + delivered + ", skipped=" + skipped.get()
+                + ", pending=" + pending.get() + ", blocked=" + blocked.get()
+                + ", lastLag=" + lastLagNanos / 1000 + "us, maxLag=" + maxLagNanos / 1000 + "us";
+    }
+}
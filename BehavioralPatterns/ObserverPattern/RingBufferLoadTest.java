@@ -0,0 +1,79 @@
+// Publishes readings from one sensor thread into a MeasurementRing drained
+// by three batch observers, and compares with the same feed through
+// per-observer async lanes.
+public class RingBufferLoadTest {
+    private static final int READINGS = 5_000_000;
+    private static final int CAPACITY = 1 << 16;
+    
+    public static void main(String[] args) throws InterruptedException {
+        System.out.printf("%,d readings, ring capacity %,d%n%n", READINGS, CAPACITY);
+        runRing();
+        runLanes();
+    }
+    
+    private static void runRing() throws InterruptedException {
+        MeasurementRing ring = new MeasurementRing(CAPACITY);
+        WeatherData weatherData = new WeatherData(ring);
+        TemperatureAverage[] observers = new TemperatureAverage[3];
+        for (int i = 0; i < observers.length; i++) {
+            observers[i] = new TemperatureAverage();
+            weatherData.registerObserver(observers[i]);
+        }
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < READINGS; i++) {
+            weatherData.setMeasurements(20 + (i % 100) / 10.0f, 60 + i % 30, 1000 + i % 25);
+        }
+        weatherData.flush();
+        long elapsed = System.nanoTime() - start;
+        
+        System.out.printf("Ring:  %,12.0f readings/s%n", READINGS / (elapsed / 1e9));
+        for (TemperatureAverage observer : observers) {
+            weatherData.removeObserver(observer);
+            System.out.printf("  %,d readings in %,d batches (avg %,.0f per wakeup), mean %.2f%n",
+                    observer.count, observer.batches, (double) observer.count / observer.batches, observer.mean());
+        }
+    }
+    
+    private static void runLanes() throws InterruptedException {
+        try (AsyncDispatcher dispatcher = new AsyncDispatcher(Math.max(2, Runtime.getRuntime().availableProcessors()))) {
+            WeatherData weatherData = new WeatherData(dispatcher);
+            for (int i = 0; i < 3; i++) {
+                weatherData.registerObserver(new TemperatureAverage());
+            }
+            
+            long start = System.nanoTime();
+            for (int i = 0; i < READINGS; i++) {
+                weatherData.setMeasurements(20 + (i % 100) / 10.0f, 60 + i % 30, 1000 + i % 25);
+            }
+            weatherData.flush();
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("Lanes: %,12.0f readings/s%n", READINGS / (elapsed / 1e9));
+        }
+    }
+    
+    private static class TemperatureAverage implements Observer, BatchObserver {
+        private double sum;
+        private long count;
+        private long batches;
+        
+        @Override
+        public void update(float temperature, float humidity, float pressure) {
+            sum += temperature;
+            count++;
+        }
+        
+        @Override
+        public void onBatch(MeasurementBatch batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                sum += batch.getTemperature(i);
+            }
+            count += batch.size();
+            batches++;
+        }
+        
+        double mean() {
+            return sum / count;
+        }
+    }
+}
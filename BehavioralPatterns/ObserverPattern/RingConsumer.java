@@ -0,0 +1,99 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// One observer's position in a MeasurementRing. On each wakeup it hands the
+// observer everything published since its last batch, which may be
+// thousands of readings, then releases those slots to the producer.
+public class RingConsumer implements Runnable {
+    // Empty polls spent spinning, then yielding, before parking.
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+    
+    private final MeasurementRing ring;
+    private final BatchObserver observer;
+    private final MeasurementBatch batch;
+    // Last sequence fully processed; read by the producer as its gate.
+    private final AtomicLong sequence;
+    private volatile boolean running;
+    private volatile long batches;
+    private volatile long readings;
+    
+    RingConsumer(MeasurementRing ring, BatchObserver observer, long startAfter) {
+        this.ring = ring;
+        this.observer = observer;
+        this.batch = ring.newBatchView();
+        this.sequence = new AtomicLong(startAfter);
+    }
+    
+    // Processes whatever is available and returns how many readings that was.
+    public int poll() {
+        long available = ring.getCursor();
+        long current = sequence.get();
+        if (available <= current) {
+            return 0;
+        }
+        int size = (int) (available - current);
+        batch.reset(current + 1, size);
+        try {
+            observer.onBatch(batch);
+        } catch (RuntimeException e) {
+            System.err.println("Batch observer " + observer.getClass().getSimpleName() + " failed: " + e);
+        }
+        batches++;
+        readings += size;
+        sequence.lazySet(available);
+        return size;
+    }
+    
+    @Override
+    public void run() {
+        int idle = 0;
+        while (running) {
+            if (poll() > 0) {
+                idle = 0;
+            } else if (idle < SPIN_TRIES) {
+                idle++;
+                Thread.onSpinWait();
+            } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+                idle++;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+    
+    public Thread start(String name) {
+        running = true;
+        Thread thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+    
+    public void stop() {
+        running = false;
+    }
+    
+    public BatchObserver getObserver() {
+        return observer;
+    }
+    
+    long getSequence() {
+        return sequence.get();
+    }
+    
+    public long getBatches() {
+        return batches;
+    }
+    
+    public long getReadings() {
+        return readings;
+    }
+    
+    // Readings published but not yet processed by this consumer.
+    public long getLag() {
+        return ring.getCursor() - sequence.get();
+    }
+}
@@ -0,0 +1,68 @@
+// Summary of the readings in one minute or hour of a TimeSeriesStore.
+public final class Rollup {
+    private final long startMillis;
+    private final int count;
+    private final float minTemperature;
+    private final float maxTemperature;
+    private final double temperatureSum;
+    private final double humiditySum;
+    private final double pressureSum;
+    
+    Rollup(long startMillis, int count, float minTemperature, float maxTemperature,
+           double temperatureSum, double humiditySum, double pressureSum) {
+        this.startMillis = startMillis;
+        this.count = count;
+        this.minTemperature = minTemperature;
+        this.maxTemperature = maxTemperature;
+        this.temperatureSum = temperatureSum;
+        this.humiditySum = humiditySum;
+        this.pressureSum = pressureSum;
+    }
+    
+    public long getStartMillis() {
+        return startMillis;
+    }
+    
+    public int getCount() {
+        return count;
+    }
+    
+    public float getMinTemperature() {
+        return minTemperature;
+    }
+    
+    public float getMaxTemperature() {
+        return maxTemperature;
+    }
+    
+    public double getMeanTemperature() {
+        return temperatureSum / count;
+    }
+    
+    public double getMeanHumidity() {
+        return humiditySum / count;
+    }
+    
+    public double getMeanPressure() {
+        return pressureSum / count;
+    }
+    
+    double getTemperatureSum() {
+        return temperatureSum;
+    }
+    
+    double getHumiditySum() {
+        return humiditySum;
+    }
+    
+    double getPressureSum() {
+        return pressureSum;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%tFT%<tT: %d readings, temperature %.1f..%.1f (avg %.2f), humidity %.1f, pressure %.1f",
+                startMillis, count, minTemperature, maxTemperature, getMeanTemperature(), getMeanHumidity(),
+                getMeanPressure());
+    }
+}
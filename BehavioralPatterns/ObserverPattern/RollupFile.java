@@ -0,0 +1,102 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Append-only file of fixed-size Rollup records in start order:
+// [long start][int count][float min][float max][double sums x3]. Records are
+// small and few (one per minute or hour), so they are read with positional
+// reads and found by binary search rather than mapped.
+final class RollupFile implements AutoCloseable {
+    private static final int RECORD_BYTES = Long.BYTES + Integer.BYTES + 2 * Float.BYTES + 3 * Double.BYTES;
+    
+    private final FileChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(RECORD_BYTES);
+    private volatile long count;
+    
+    RollupFile(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // A record cut short by a crash is dropped.
+        count = channel.size() / RECORD_BYTES;
+        channel.truncate(count * RECORD_BYTES);
+    }
+    
+    // Only called from the store's rollup thread.
+    void append(Rollup rollup) throws IOException {
+        writeBuffer.clear();
+        writeBuffer.putLong(rollup.getStartMillis()).putInt(rollup.getCount())
+                .putFloat(rollup.getMinTemperature()).putFloat(rollup.getMaxTemperature())
+                .putDouble(rollup.getTemperatureSum()).putDouble(rollup.getHumiditySum())
+                .putDouble(rollup.getPressureSum()).flip();
+        long position = count * RECORD_BYTES;
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer, position + writeBuffer.position());
+        }
+        count++;
+    }
+    
+    long size() {
+        return count;
+    }
+    
+    // The newest record, or null if there is none yet.
+    Rollup last() throws IOException {
+        long records = count;
+        return records == 0 ? null : read(records - 1);
+    }
+    
+    // Records whose start is in [from, to).
+    List<Rollup> range(long from, long to) throws IOException {
+        long records = count;
+        long low = 0;
+        long high = records;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (startAt(middle) < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        List<Rollup> rollups = new ArrayList<>();
+        for (long i = low; i < records; i++) {
+            Rollup rollup = read(i);
+            if (rollup.getStartMillis() >= to) {
+                break;
+            }
+            rollups.add(rollup);
+        }
+        return rollups;
+    }
+    
+    private long startAt(long index) throws IOException {
+        ByteBuffer start = ByteBuffer.allocate(Long.BYTES);
+        readFully(start, index * RECORD_BYTES);
+        return start.getLong(0);
+    }
+    
+    private Rollup read(long index) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        readFully(record, index * RECORD_BYTES);
+        record.flip();
+        return new Rollup(record.getLong(), record.getInt(), record.getFloat(), record.getFloat(),
+                record.getDouble(), record.getDouble(), record.getDouble());
+    }
+    
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Rollup record past end of file at " + position);
+            }
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One station in a StationRegistry: its pending readings, the observers
+// following it directly, and delivery metrics. A station is always served
+// by the same shard thread, so its readings arrive in publish order.
+public class StationFeed {
+    private final String stationId;
+    private final String region;
+    private final int shard;
+    final StationRegistry.Region regionSubscribers;
+    // Bounded by `capacity` through `queued`; when it is full the oldest
+    // reading makes room for the new one, see StationRegistry.publish.
+    final Queue<Measurement> queue = new ConcurrentLinkedQueue<>();
+    final AtomicInteger queued = new AtomicInteger();
+    final int capacity;
+    final AtomicLong dropped = new AtomicLong();
+    // True while the station sits in its shard's ready queue or is being
+    // drained, so it is never queued twice.
+    final AtomicBoolean scheduled = new AtomicBoolean();
+    // Copy-on-write, replaced under the registry's lock.
+    volatile StationObserver[] observers = new StationObserver[0];
+    // Written only by the station's shard thread.
+    private volatile long delivered;
+    private volatile long maxLagNanos;
+    
+    StationFeed(String stationId, String region, int shard, StationRegistry.Region regionSubscribers, int capacity) {
+        this.capacity = capacity;
+        this.stationId = stationId;
+        this.region = region;
+        this.shard = shard;
+        this.regionSubscribers = regionSubscribers;
+    }
+    
+    void recordDelivery(Measurement measurement) {
+        long lag = System.nanoTime() - measurement.getPublishedNanos();
+        if (lag > maxLagNanos) {
+            maxLagNanos = lag;
+        }
+        delivered++;
+    }
+    
+    public String getStationId() {
+        return stationId;
+    }
+    
+    public String getRegion() {
+        return region;
+    }
+    
+    public int getShard() {
+        return shard;
+    }
+    
+    public long getDelivered() {
+        return delivered;
+    }
+    
+    // Readings pushed out of a full backlog before they were delivered.
+    public long getDropped() {
+        return dropped.get();
+    }
+    
+    // Longest time from publish to delivery for any of this station's readings.
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return stationId + " (" + region + ", shard " + shard + "): delivered=" + delivered
+                + ", pending=" + queued.get() + ", dropped=" + dropped.get() + ", maxLag=" + maxLagNanos / 1000 + "us";
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+// Simulates 10,000 stations in 100 regions publishing into a
+// StationRegistry. One station is hot: it sends a fifth of all readings and
+// has a slow observer of its own. Every region has a thread-safe average
+// observer. The report compares the lag of quiet stations that share the hot
+// station's shard with the lag of those that do not.
+public class StationLoadTest {
+    private static final int STATIONS = 10_000;
+    private static final int REGIONS = 100;
+    private static final int READINGS = 2_000_000;
+    private static final String HOT = stationId(0);
+    
+    public static void main(String[] args) throws InterruptedException {
+        int shards = Math.max(4, Runtime.getRuntime().availableProcessors());
+        try (StationRegistry registry = new StationRegistry(shards)) {
+            RegionAverage[] averages = new RegionAverage[REGIONS];
+            for (int r = 0; r < REGIONS; r++) {
+                averages[r] = new RegionAverage();
+                registry.subscribeRegion(regionId(r), averages[r]);
+            }
+            String[] ids = new String[STATIONS];
+            for (int i = 0; i < STATIONS; i++) {
+                ids[i] = stationId(i);
+                registry.addStation(ids[i], regionId(i % REGIONS));
+            }
+            registry.subscribe(HOT, new SlowObserver(5_000));
+            
+            long start = System.nanoTime();
+            for (int i = 0; i < READINGS; i++) {
+                String station = i % 5 == 0 ? HOT : ids[1 + i % (STATIONS - 1)];
+                registry.publish(station, 20 + (i % 100) / 10.0f, 60 + i % 30, 1000 + i % 25);
+            }
+            long published = System.nanoTime() - start;
+            registry.flush();
+            long drained = System.nanoTime() - start;
+            
+            System.out.printf("%,d stations, %,d readings on %d shards: published in %,d ms (%,.0f readings/s),"
+                    + " drained after %,d ms%n",
+                    STATIONS, READINGS, shards, published / 1_000_000, READINGS / (published / 1e9),
+                    drained / 1_000_000);
+            for (int s = 0; s < shards; s++) {
+                System.out.printf("  shard %d delivered %,d%n", s, registry.getShardDelivered(s));
+            }
+            
+            StationFeed hot = registry.getStation(HOT);
+            List<Long> sameShard = new ArrayList<>();
+            List<Long> otherShards = new ArrayList<>();
+            for (StationFeed feed : registry.getStations()) {
+                if (feed != hot) {
+                    (feed.getShard() == hot.getShard() ? sameShard : otherShards).add(feed.getMaxLagNanos());
+                }
+            }
+            System.out.printf("Hot station %s on shard %d: %,d readings delivered, %,d dropped, max lag %,d ms%n",
+                    HOT, hot.getShard(), hot.getDelivered(), hot.getDropped(), hot.getMaxLagNanos() / 1_000_000);
+            report("Quiet stations on the hot shard", sameShard);
+            report("Quiet stations on other shards", otherShards);
+            
+            long regionReadings = 0;
+            for (RegionAverage average : averages) {
+                regionReadings += average.count.sum();
+            }
+            System.out.printf("Region observers saw %,d readings; %s averages %.2f°C%n",
+                    regionReadings, regionId(0), averages[0].get());
+        }
+    }
+    
+    private static void report(String label, List<Long> maxLags) {
+        Collections.sort(maxLags);
+        System.out.printf("%s (%,d): median max lag %,d ms, worst %,d ms%n", label, maxLags.size(),
+                maxLags.get(maxLags.size() / 2) / 1_000_000, maxLags.get(maxLags.size() - 1) / 1_000_000);
+    }
+    
+    private static String stationId(int index) {
+        return String.format("station-%05d", index);
+    }
+    
+    private static String regionId(int index) {
+        return String.format("region-%02d", index);
+    }
+    
+    // Called from several shards at once.
+    private static class RegionAverage implements StationObserver {
+        private final DoubleAdder sum = new DoubleAdder();
+        private final LongAdder count = new LongAdder();
+        
+        @Override
+        public void update(Measurement measurement) {
+            sum.add(measurement.getTemperature());
+            count.increment();
+        }
+        
+        double get() {
+            return sum.sum() / count.sum();
+        }
+    }
+    
+    private static class SlowObserver implements StationObserver {
+        private final int spinNanos;
+        
+        SlowObserver(int spinNanos) {
+            this.spinNanos = spinNanos;
+        }
+        
+        @Override
+        public void update(Measurement measurement) {
+            long until = System.nanoTime() + spinNanos;
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
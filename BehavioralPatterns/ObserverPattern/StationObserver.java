@@ -0,0 +1,6 @@
+// Observer of readings from a StationRegistry. Unlike Observer it is told
+// which station each reading came from, since one observer can follow a
+// whole region.
+public interface StationObserver {
+    void update(Measurement measurement);
+}
@@ -0,0 +1,260 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Subject for many stations at once. Observers follow a single station or
+// a whole region. Delivery is sharded by station id over a fixed set of
+// threads, so a station's readings stay in order and never reach its
+// observers concurrently. Within a shard, stations with pending readings
+// take turns of at most QUANTUM readings each, so a hot station only delays
+// the stations sharing its shard by one turn rather than by its backlog.
+//
+// Region observers are called from every shard that holds one of the
+// region's stations, so they must be thread-safe.
+//
+// Each station's backlog is bounded. A full backlog drops its oldest
+// reading rather than blocking the publisher, which usually feeds every
+// station: one flooding station must not hold up the rest. Drops are
+// counted per station.
+public class StationRegistry implements AutoCloseable {
+    public static final int DEFAULT_STATION_CAPACITY = 65_536;
+    private static final int QUANTUM = 32;
+    
+    private final int stationCapacity;
+    private final Map<String, StationFeed> stations = new ConcurrentHashMap<>();
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+    private final Shard[] shards;
+    
+    public StationRegistry() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public StationRegistry(int shardCount) {
+        this(shardCount, DEFAULT_STATION_CAPACITY);
+    }
+    
+    public StationRegistry(int shardCount, int stationCapacity) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Registry needs at least one shard");
+        }
+        if (stationCapacity < 1) {
+            throw new IllegalArgumentException("Station capacity must be positive, got " + stationCapacity);
+        }
+        this.stationCapacity = stationCapacity;
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard("station-shard-" + i);
+            shards[i].thread.start();
+        }
+    }
+    
+    public StationFeed addStation(String stationId, String region) {
+        Region subscribers = regions.computeIfAbsent(region, key -> new Region());
+        StationFeed feed = new StationFeed(stationId, region, shardOf(stationId), subscribers, stationCapacity);
+        if (stations.putIfAbsent(stationId, feed) != null) {
+            throw new IllegalArgumentException("Station already registered: " + stationId);
+        }
+        return feed;
+    }
+    
+    // Only enqueues; the reading is delivered on the station's shard. The
+    // new reading is counted before an old one is dropped, so the shard's
+    // pending count cannot reach zero here. Concurrent publishers to one
+    // station can overshoot the capacity by one reading each.
+    public void publish(String stationId, float temperature, float humidity, float pressure) {
+        StationFeed feed = station(stationId);
+        Shard shard = shards[feed.getShard()];
+        shard.pending.incrementAndGet();
+        if (feed.queued.incrementAndGet() > feed.capacity && feed.queue.poll() != null) {
+            feed.queued.decrementAndGet();
+            feed.dropped.incrementAndGet();
+            shard.pending.decrementAndGet();
+        }
+        feed.queue.add(new Measurement(stationId, temperature, humidity, pressure, System.nanoTime()));
+        if (feed.scheduled.compareAndSet(false, true)) {
+            shard.ready.add(feed);
+        }
+    }
+    
+    public synchronized void subscribe(String stationId, StationObserver observer) {
+        StationFeed feed = station(stationId);
+        feed.observers = with(feed.observers, observer);
+    }
+    
+    public synchronized void unsubscribe(String stationId, StationObserver observer) {
+        StationFeed feed = station(stationId);
+        feed.observers = without(feed.observers, observer);
+    }
+    
+    // Stations added to the region later are covered too.
+    public synchronized void subscribeRegion(String region, StationObserver observer) {
+        Region subscribers = regions.computeIfAbsent(region, key -> new Region());
+        subscribers.observers = with(subscribers.observers, observer);
+    }
+    
+    public synchronized void unsubscribeRegion(String region, StationObserver observer) {
+        Region subscribers = regions.get(region);
+        if (subscribers != null) {
+            subscribers.observers = without(subscribers.observers, observer);
+        }
+    }
+    
+    // Blocks until every reading published so far has been delivered.
+    public void flush() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.awaitIdle();
+        }
+    }
+    
+    public StationFeed getStation(String stationId) {
+        return stations.get(stationId);
+    }
+    
+    public Collection<StationFeed> getStations() {
+        return Collections.unmodifiableCollection(stations.values());
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    // Readings a shard has delivered to its stations' observers.
+    public long getShardDelivered(int shard) {
+        return shards[shard].delivered;
+    }
+    
+    // Queued readings are dropped.
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.thread.interrupt();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private StationFeed station(String stationId) {
+        StationFeed feed = stations.get(stationId);
+        if (feed == null) {
+            throw new IllegalArgumentException("Unknown station: " + stationId);
+        }
+        return feed;
+    }
+    
+    // Folds the high bits of String.hashCode in, since ids that differ
+    // only in their last characters differ only in the low bits.
+    private int shardOf(String stationId) {
+        int hash = stationId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+    
+    private static StationObserver[] with(StationObserver[] observers, StationObserver observer) {
+        StationObserver[] updated = Arrays.copyOf(observers, observers.length + 1);
+        updated[observers.length] = observer;
+        return updated;
+    }
+    
+    private static StationObserver[] without(StationObserver[] observers, StationObserver observer) {
+        for (int i = 0; i < observers.length; i++) {
+            if (observers[i] == observer) {
+                StationObserver[] updated = new StationObserver[observers.length - 1];
+                System.arraycopy(observers, 0, updated, 0, i);
+                System.arraycopy(observers, i + 1, updated, i, observers.length - i - 1);
+                return updated;
+            }
+        }
+        return observers;
+    }
+    
+    static final class Region {
+        // Copy-on-write, replaced under the registry's lock.
+        volatile StationObserver[] observers = new StationObserver[0];
+    }
+    
+    private static final class Shard implements Runnable {
+        private final Thread thread;
+        // Stations with pending readings, in the order they take turns.
+        private final BlockingQueue<StationFeed> ready = new LinkedBlockingQueue<>();
+        private final AtomicLong pending = new AtomicLong();
+        private final Object idle = new Object();
+        // Written only by the shard thread.
+        private volatile long delivered;
+        
+        Shard(String name) {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+        
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    serve(ready.take());
+                }
+            } catch (InterruptedException e) {
+                // Registry closed.
+            }
+        }
+        
+        // One turn: up to QUANTUM readings, then the station goes to the
+        // back of the line if it still has more.
+        private void serve(StationFeed feed) {
+            Measurement measurement;
+            int served = 0;
+            for (; served < QUANTUM && (measurement = feed.queue.poll()) != null; served++) {
+                feed.queued.decrementAndGet();
+                deliver(feed, measurement);
+            }
+            feed.scheduled.set(false);
+            // A reading published after the last poll but before the flag
+            // was cleared would otherwise wait for the next publish.
+            if (!feed.queue.isEmpty() && feed.scheduled.compareAndSet(false, true)) {
+                ready.add(feed);
+            }
+            delivered += served;
+            if (served > 0 && pending.addAndGet(-served) == 0) {
+                synchronized (idle) {
+                    idle.notifyAll();
+                }
+            }
+        }
+        
+        private void deliver(StationFeed feed, Measurement measurement) {
+            for (StationObserver observer : feed.observers) {
+                update(observer, measurement);
+            }
+            for (StationObserver observer : feed.regionSubscribers.observers) {
+                update(observer, measurement);
+            }
+            feed.recordDelivery(measurement);
+        }
+        
+        private static void update(StationObserver observer, Measurement measurement) {
+            try {
+                observer.update(measurement);
+            } catch (RuntimeException e) {
+                System.err.println("Observer " + observer.getClass().getSimpleName() + " failed for "
+                        + measurement.getStationId() + ": " + e);
+            }
+        }
+        
+        void awaitIdle() throws InterruptedException {
+            synchronized (idle) {
+                while (pending.get() > 0) {
+                    idle.wait();
+                }
+            }
+        }
+    }
+}
@@ -1,8 +1,15 @@
-public class StatisticsDisplay implements Observer, DisplayElement {
-    private float maxTemp = Float.MIN_VALUE;
-    private float minTemp = Float.MAX_VALUE;
+import java.time.Duration;
+
+public class StatisticsDisplay implements Observer, BatchObserver, DisplayElement {
+    private static final Duration WINDOW = Duration.ofMinutes(5);
+    
+    // Float.MIN_VALUE is the smallest positive float, not the most negative.
+    private float maxTemp = Float.NEGATIVE_INFINITY;
+    private float minTemp = Float.POSITIVE_INFINITY;
     private float tempSum = 0.0f;
     private int numReadings = 0;
+    // 60 five-second panes, 0.1°C buckets from -90°C to 60°C.
+    private final StreamingStatistics recent = StreamingStatistics.overTime(WINDOW, 60, -90, 60, 0.1);
     private Subject weatherData;
     
     public StatisticsDisplay(Subject weatherData) {
@@ -12,6 +19,22 @@ public class StatisticsDisplay implements Observer, DisplayElement {
     
     @Override
     public void update(float temperature, float humidity, float pressure) {
+        record(temperature, System.nanoTime());
+        display();
+    }
+    
+    // Folds a whole batch from a MeasurementRing in and displays once.
+    @Override
+    public void onBatch(MeasurementBatch batch) {
+        long now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            record(batch.getTemperature(i), now);
+        }
+        display();
+    }
+    
+    private void record(float temperature, long timestampNanos) {
+        recent.record(temperature, timestampNanos);
         tempSum += temperature;
         numReadings++;
         
@@ -22,8 +45,6 @@ public class StatisticsDisplay implements Observer, DisplayElement {
         if (temperature < minTemp) {
             minTemp = temperature;
         }
-        
-        display();
     }
     
     @Override
@@ -32,5 +53,14 @@ public class StatisticsDisplay implements Observer, DisplayElement {
         System.out.println("Avg: " + (tempSum / numReadings) + "°C");
         System.out.println("Max: " + maxTemp + "°C");
         System.out.println("Min: " + minTemp + "°C");
+        // The window only moves when told to, so readings that stopped
+        // arriving must not keep it showing old panes.
+        recent.advanceTo(System.nanoTime());
+        if (recent.getCount() == 0) {
+            System.out.println(String.format("Last %d min: no readings", WINDOW.toMinutes()));
+        } else {
+            System.out.println(String.format("Last %d min: p95 %.1f°C, stddev %.2f°C",
+                    WINDOW.toMinutes(), recent.percentile(95), recent.getStandardDeviation()));
+        }
     }
 }
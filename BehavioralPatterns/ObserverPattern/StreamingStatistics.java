@@ -0,0 +1,269 @@
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+// Sliding-window statistics without keeping raw samples. The window is cut
+// into a fixed number of panes, by time or by sample count; each pane keeps
+// only its moments, min/max and a sparse histogram. The window is the
+// current pane plus the newest closed ones, so it is exact to one pane.
+//
+// - min/max: monotonic deques of closed panes, O(1) amortized per pane
+// - mean/variance: Welford within a pane, Chan merge across panes; when a
+//   pane leaves, the total is rebuilt from the panes still in the window
+//   rather than subtracted, which would lose precision over a long run
+// - percentiles: a fixed-bucket histogram that panes add to and subtract
+//   from as they enter and leave the window
+public class StreamingStatistics {
+    private final boolean timeBased;
+    // Nanoseconds or samples per pane.
+    private final long paneSpan;
+    private final int paneCount;
+    private final ValueHistogram histogram;
+    private final Deque<Pane> closed = new ArrayDeque<>();
+    private final Deque<Pane> minCandidates = new ArrayDeque<>();
+    private final Deque<Pane> maxCandidates = new ArrayDeque<>();
+    private final Moments closedMoments = new Moments();
+    // Set when a pane expires or a late sample lands in a closed pane;
+    // closedMoments is rebuilt on the next read.
+    private boolean closedMomentsStale;
+    private Pane current;
+    // The newest pane any sample or advanceTo has reached.
+    private long newestKey = Long.MIN_VALUE;
+    private long samplesSeen;
+    private long lateDropped;
+    
+    private StreamingStatistics(boolean timeBased, long paneSpan, int paneCount,
+                                double lowest, double highest, double resolution) {
+        if (paneSpan <= 0 || paneCount < 1) {
+            throw new IllegalArgumentException("Window must span at least one non-empty pane");
+        }
+        this.timeBased = timeBased;
+        this.paneSpan = paneSpan;
+        this.paneCount = paneCount;
+        this.histogram = new ValueHistogram(lowest, highest, resolution);
+    }
+    
+    public static StreamingStatistics overTime(Duration window, int panes,
+                                               double lowest, double highest, double resolution) {
+        return new StreamingStatistics(true, Math.max(1, window.toNanos() / panes), panes, lowest, highest, resolution);
+    }
+    
+    public static StreamingStatistics overSamples(int window, int panes,
+                                                  double lowest, double highest, double resolution) {
+        return new StreamingStatistics(false, Math.max(1, (window + panes - 1) / panes), panes,
+                lowest, highest, resolution);
+    }
+    
+    // Timestamps only matter for time windows. A late sample goes into the
+    // closed pane its timestamp belongs to, or is dropped and counted once
+    // that pane has left the window.
+    public void record(double value, long timestampNanos) {
+        long key = timeBased ? Math.floorDiv(timestampNanos, paneSpan) : samplesSeen / paneSpan;
+        samplesSeen++;
+        if (key < newestKey) {
+            recordLate(value, key);
+            return;
+        }
+        advanceToKey(key);
+        if (current == null) {
+            current = new Pane(key);
+        }
+        int bucket = histogram.bucketOf(value);
+        current.add(value, bucket);
+        histogram.add(bucket, 1);
+    }
+    
+    // Getters describe the window as of the latest record or advanceTo, so
+    // a reader of a time window calls this first to expire panes that aged
+    // out while no samples arrived.
+    public void advanceTo(long nowNanos) {
+        if (timeBased) {
+            advanceToKey(Math.floorDiv(nowNanos, paneSpan));
+        }
+    }
+    
+    // Samples too late for any pane still in the window.
+    public long getLateDropped() {
+        return lateDropped;
+    }
+    
+    public long getCount() {
+        return windowMoments().getCount();
+    }
+    
+    public double getMean() {
+        return windowMoments().getMean();
+    }
+    
+    public double getVariance() {
+        return windowMoments().getVariance();
+    }
+    
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+    
+    public double getMin() {
+        double min = minCandidates.isEmpty() ? Double.NaN : minCandidates.peekFirst().min;
+        if (current != null && !(current.min >= min)) {
+            min = current.min;
+        }
+        return min;
+    }
+    
+    public double getMax() {
+        double max = maxCandidates.isEmpty() ? Double.NaN : maxCandidates.peekFirst().max;
+        if (current != null && !(current.max <= max)) {
+            max = current.max;
+        }
+        return max;
+    }
+    
+    // Approximate to one histogram bucket, and never outside [min, max].
+    public double percentile(double percentile) {
+        if (getCount() == 0) {
+            return Double.NaN;
+        }
+        return Math.max(getMin(), Math.min(getMax(), histogram.percentile(percentile)));
+    }
+    
+    private Moments windowMoments() {
+        if (closedMomentsStale) {
+            closedMoments.clear();
+            for (Pane pane : closed) {
+                closedMoments.merge(pane.moments);
+            }
+            closedMomentsStale = false;
+        }
+        Moments window = new Moments();
+        window.copyFrom(closedMoments);
+        if (current != null) {
+            window.merge(current.moments);
+        }
+        return window;
+    }
+    
+    private void advanceToKey(long key) {
+        if (key <= newestKey) {
+            return;
+        }
+        newestKey = key;
+        if (current != null) {
+            close(current);
+            current = null;
+        }
+        long oldestKept = key - paneCount + 1;
+        while (!closed.isEmpty() && closed.peekFirst().key < oldestKept) {
+            expire(closed.pollFirst());
+        }
+    }
+    
+    // Rare, so it takes the simple route: find or insert the pane, then
+    // rebuild the min/max candidates from the closed panes.
+    private void recordLate(double value, long key) {
+        if (key <= newestKey - paneCount) {
+            lateDropped++;
+            return;
+        }
+        Pane pane = closedPane(key);
+        int bucket = histogram.bucketOf(value);
+        pane.add(value, bucket);
+        histogram.add(bucket, 1);
+        closedMomentsStale = true;
+        minCandidates.clear();
+        maxCandidates.clear();
+        for (Pane each : closed) {
+            addCandidate(each);
+        }
+    }
+    
+    // Closed panes stay in key order, so a pane for a period that had no
+    // samples is inserted where it belongs.
+    private Pane closedPane(long key) {
+        for (Pane pane : closed) {
+            if (pane.key == key) {
+                return pane;
+            }
+        }
+        Pane inserted = new Pane(key);
+        Pane[] panes = closed.toArray(new Pane[0]);
+        closed.clear();
+        boolean placed = false;
+        for (Pane pane : panes) {
+            if (!placed && pane.key > key) {
+                closed.addLast(inserted);
+                placed = true;
+            }
+            closed.addLast(pane);
+        }
+        if (!placed) {
+            closed.addLast(inserted);
+        }
+        return inserted;
+    }
+    
+    private void close(Pane pane) {
+        closed.addLast(pane);
+        closedMoments.merge(pane.moments);
+        addCandidate(pane);
+    }
+    
+    private void addCandidate(Pane pane) {
+        while (!minCandidates.isEmpty() && minCandidates.peekLast().min >= pane.min) {
+            minCandidates.pollLast();
+        }
+        minCandidates.addLast(pane);
+        while (!maxCandidates.isEmpty() && maxCandidates.peekLast().max <= pane.max) {
+            maxCandidates.pollLast();
+        }
+        maxCandidates.addLast(pane);
+    }
+    
+    private void expire(Pane pane) {
+        closedMomentsStale = true;
+        for (int i = 0; i < pane.distinctBuckets; i++) {
+            histogram.remove(pane.buckets[i], pane.bucketCounts[i]);
+        }
+        if (minCandidates.peekFirst() == pane) {
+            minCandidates.pollFirst();
+        }
+        if (maxCandidates.peekFirst() == pane) {
+            maxCandidates.pollFirst();
+        }
+    }
+    
+    private static final class Pane {
+        final long key;
+        final Moments moments = new Moments();
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        // Sparse histogram: readings in one pane rarely span many buckets.
+        int[] buckets = new int[4];
+        int[] bucketCounts = new int[4];
+        int distinctBuckets;
+        
+        Pane(long key) {
+            this.key = key;
+        }
+        
+        void add(double value, int bucket) {
+            moments.add(value);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            for (int i = distinctBuckets - 1; i >= 0; i--) {
+                if (buckets[i] == bucket) {
+                    bucketCounts[i]++;
+                    return;
+                }
+            }
+            if (distinctBuckets == buckets.length) {
+                buckets = Arrays.copyOf(buckets, distinctBuckets * 2);
+                bucketCounts = Arrays.copyOf(bucketCounts, distinctBuckets * 2);
+            }
+            buckets[distinctBuckets] = bucket;
+            bucketCounts[distinctBuckets] = 1;
+            distinctBuckets++;
+        }
+    }
+}
@@ -1,5 +1,17 @@
 public interface Subject {
-    void registerObserver(Observer observer);
+    // The shorter overloads fill in the defaults, so an implementation
+    // only has to provide the full form.
+    default void registerObserver(Observer observer) {
+        registerObserver(observer, DeliveryMode.LOSSLESS, ChangeFilter.ALWAYS);
+    }
+    default void registerObserver(Observer observer, DeliveryMode mode) {
+        registerObserver(observer, mode, ChangeFilter.ALWAYS);
+    }
+    default void registerObserver(Observer observer, ChangeFilter filter) {
+        registerObserver(observer, DeliveryMode.LOSSLESS, filter);
+    }
+    void registerObserver(Observer observer, DeliveryMode mode, ChangeFilter filter);
+    void registerWeakObserver(Observer observer);
     void removeObserver(Observer observer);
     void notifyObservers();
 }
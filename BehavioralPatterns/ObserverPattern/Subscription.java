@@ -0,0 +1,90 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+// One observer's registration with a subject: how it is delivered to and
+// which readings it wants. The last delivered reading is the filter's
+// reference point, so a slow drift still fires once it adds up.
+//
+// A weak subscription does not keep its observer reachable. Once the
+// observer is collected its reference is enqueued, and the subject removes
+// the subscription the next time it drains the queue.
+final class Subscription {
+    // Exactly one of these is set.
+    private final Observer strong;
+    private final WeakObserver weak;
+    // What lanes and ring consumers call: the observer itself, or for a
+    // weak subscription a forwarder that only holds the weak reference.
+    final Observer delivery;
+    final DeliveryMode mode;
+    final ChangeFilter filter;
+    // Set when the subject dispatches asynchronously. Holding the lane
+    // means a notification racing with removal offers to the old lane
+    // instead of creating a new one.
+    ObserverLane lane;
+    RingConsumer consumer;
+    private float lastTemperature = Float.NaN;
+    private float lastHumidity = Float.NaN;
+    private float lastPressure = Float.NaN;
+    // Single writer, read by whoever asks for the count.
+    private volatile long filtered;
+    
+    Subscription(Observer observer, DeliveryMode mode, ChangeFilter filter) {
+        this.strong = observer;
+        this.weak = null;
+        this.delivery = observer;
+        this.mode = mode;
+        this.filter = filter;
+    }
+    
+    Subscription(Observer observer, DeliveryMode mode, ChangeFilter filter, ReferenceQueue<Observer> queue) {
+        this.strong = null;
+        this.weak = new WeakObserver(observer, queue, this);
+        WeakObserver reference = weak;
+        this.delivery = (temperature, humidity, pressure) -> {
+            Observer target = reference.get();
+            if (target != null) {
+                target.update(temperature, humidity, pressure);
+            }
+        };
+        this.mode = mode;
+        this.filter = filter;
+    }
+    
+    // Null once a weakly held observer has been collected.
+    Observer observer() {
+        return weak == null ? strong : weak.get();
+    }
+    
+    boolean isWeak() {
+        return weak != null;
+    }
+    
+    // Only ever called from the thread publishing to this subscription.
+    boolean accept(float temperature, float humidity, float pressure) {
+        if (filter == ChangeFilter.ALWAYS) {
+            return true;
+        }
+        if (!filter.passes(lastTemperature, lastHumidity, lastPressure, temperature, humidity, pressure)) {
+            filtered++;
+            return false;
+        }
+        lastTemperature = temperature;
+        lastHumidity = humidity;
+        lastPressure = pressure;
+        return true;
+    }
+    
+    long getFilteredCount() {
+        return filtered;
+    }
+    
+    // Leads back from the reference queue to the subscription to remove.
+    static final class WeakObserver extends WeakReference<Observer> {
+        final Subscription subscription;
+        
+        WeakObserver(Observer observer, ReferenceQueue<Observer> queue, Subscription subscription) {
+            super(observer, queue);
+            this.subscription = subscription;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Records a live feed into a TimeSeriesStore through WeatherData, then
+// back-fills a month of one-per-second history and reads it back: a raw
+// one-hour range scan and a day of hourly rollups, after a reopen.
+public class TimeSeriesLoadTest {
+    private static final int LIVE_READINGS = 1_000_000;
+    private static final int HISTORY_SECONDS = 30 * 24 * 3600;
+    private static final long HOUR = TimeSeriesStore.Resolution.HOUR.getMillis();
+    
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("weather-history");
+        try {
+            long start = System.currentTimeMillis() / HOUR * HOUR - (long) HISTORY_SECONDS * 1000;
+            try (TimeSeriesStore store = new TimeSeriesStore(directory)) {
+                long begin = System.nanoTime();
+                for (int i = 0; i < HISTORY_SECONDS; i++) {
+                    store.append(start + i * 1000L, 10 + 10 * (float) Math.sin(i / 13_751.0), 60 + i % 30,
+                            1000 + i % 25);
+                }
+                long elapsed = System.nanoTime() - begin;
+                System.out.printf("Back-filled %,d readings in %,d ms (%,.0f rows/s)%n",
+                        HISTORY_SECONDS, elapsed / 1_000_000, HISTORY_SECONDS / (elapsed / 1e9));
+                
+                WeatherData weatherData = new WeatherData();
+                weatherData.registerObserver(store);
+                begin = System.nanoTime();
+                for (int i = 0; i < LIVE_READINGS; i++) {
+                    weatherData.setMeasurements(20 + (i % 100) / 10.0f, 60 + i % 30, 1000 + i % 25);
+                }
+                elapsed = System.nanoTime() - begin;
+                System.out.printf("Recorded %,d live readings in %,d ms (%,.0f readings/s)%n",
+                        LIVE_READINGS, elapsed / 1_000_000, LIVE_READINGS / (elapsed / 1e9));
+            }
+            
+            long begin = System.nanoTime();
+            try (TimeSeriesStore store = new TimeSeriesStore(directory)) {
+                System.out.printf("Reopened %,d rows in %d segments in %,d ms%n",
+                        store.size(), store.getSegmentCount(), (System.nanoTime() - begin) / 1_000_000);
+                
+                long from = start + 10 * 24 * HOUR;
+                double[] sum = new double[1];
+                begin = System.nanoTime();
+                long rows = store.scan(from, from + HOUR, (timestamp, temperature, humidity, pressure) ->
+                        sum[0] += temperature);
+                System.out.printf("Scanned one hour: %,d rows, mean %.2f°C, in %,d us%n",
+                        rows, sum[0] / rows, (System.nanoTime() - begin) / 1000);
+                
+                begin = System.nanoTime();
+                List<Rollup> day = store.rollups(TimeSeriesStore.Resolution.HOUR, from, from + 24 * HOUR);
+                System.out.printf("Read %d hourly rollups in %,d us; first: %s%n",
+                        day.size(), (System.nanoTime() - begin) / 1000, day.get(0));
+                System.out.printf("%,d minute rollups stored%n",
+                        store.rollups(TimeSeriesStore.Resolution.MINUTE, Long.MIN_VALUE, Long.MAX_VALUE).size());
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// One memory-mapped file of a TimeSeriesStore holding a fixed number of rows
+// as four columns: [header][long timestamps][float temperatures]
+// [float humidities][float pressures]. Rows are appended in timestamp
+// order by one writer; the row count is written to the header after the row
+// itself, so a reopened file never exposes a half-written row.
+final class TimeSeriesSegment implements AutoCloseable {
+    private static final int MAGIC = 0x54534731;
+    private static final int HEADER_BYTES = 16;
+    private static final int ROW_BYTES = Long.BYTES + 3 * Float.BYTES;
+    
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int temperatures;
+    private final int humidities;
+    private final int pressures;
+    // Published after each row, so readers on other threads see whole rows.
+    private volatile int count;
+    
+    private TimeSeriesSegment(Path path, FileChannel channel, int capacity) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.capacity = capacity;
+        this.temperatures = HEADER_BYTES + capacity * Long.BYTES;
+        this.humidities = temperatures + capacity * Float.BYTES;
+        this.pressures = humidities + capacity * Float.BYTES;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * ROW_BYTES);
+    }
+    
+    static TimeSeriesSegment create(Path path, int capacity) throws IOException {
+        if (capacity < 1 || (long) capacity * ROW_BYTES + HEADER_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment capacity out of range: " + capacity);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TimeSeriesSegment segment = new TimeSeriesSegment(path, channel, capacity);
+        segment.buffer.putInt(0, MAGIC).putInt(4, capacity).putInt(8, 0);
+        return segment;
+    }
+    
+    static TimeSeriesSegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a time-series segment: " + path);
+        }
+        TimeSeriesSegment segment = new TimeSeriesSegment(path, channel, header.getInt(4));
+        segment.count = header.getInt(8);
+        return segment;
+    }
+    
+    // Returns false once the segment is full.
+    boolean append(long timestamp, float temperature, float humidity, float pressure) {
+        int row = count;
+        if (row == capacity) {
+            return false;
+        }
+        buffer.putLong(HEADER_BYTES + row * Long.BYTES, timestamp);
+        buffer.putFloat(temperatures + row * Float.BYTES, temperature);
+        buffer.putFloat(humidities + row * Float.BYTES, humidity);
+        buffer.putFloat(pressures + row * Float.BYTES, pressure);
+        buffer.putInt(8, row + 1);
+        count = row + 1;
+        return true;
+    }
+    
+    int size() {
+        return count;
+    }
+    
+    boolean isFull() {
+        return count == capacity;
+    }
+    
+    long timestampAt(int row) {
+        return buffer.getLong(HEADER_BYTES + row * Long.BYTES);
+    }
+    
+    float temperatureAt(int row) {
+        return buffer.getFloat(temperatures + row * Float.BYTES);
+    }
+    
+    float humidityAt(int row) {
+        return buffer.getFloat(humidities + row * Float.BYTES);
+    }
+    
+    float pressureAt(int row) {
+        return buffer.getFloat(pressures + row * Float.BYTES);
+    }
+    
+    // First of the first `rows` rows at or after the timestamp, or `rows`.
+    int lowerBound(long timestamp, int rows) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestampAt(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    Path getPath() {
+        return path;
+    }
+    
+    void force() {
+        buffer.force();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Observer that keeps every reading it sees. Rows go into memory-mapped
+// TimeSeriesSegments, one column per field, and a new segment file is
+// started whenever the current one fills up. A background thread folds
+// finished minutes into a minute RollupFile and finished hours into an hour
+// RollupFile; a minute or hour counts as finished once a later reading
+// arrives. Range queries skip every segment outside the range and binary
+// search the timestamps of the ones they read, so analytics can read
+// history without subscribing to the live feed.
+//
+// Timestamps are kept non-decreasing: a reading stamped earlier than the
+// last one is stored at the last one's time.
+public class TimeSeriesStore implements Observer, AutoCloseable {
+    public static final int DEFAULT_SEGMENT_ROWS = 1 << 20;
+    private static final long ROLLUP_INTERVAL_MILLIS = 1_000;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".tss";
+    
+    public enum Resolution {
+        MINUTE(60_000L),
+        HOUR(3_600_000L);
+        
+        private final long millis;
+        
+        Resolution(long millis) {
+            this.millis = millis;
+        }
+        
+        public long getMillis() {
+            return millis;
+        }
+        
+        long bucketOf(long timestamp) {
+            return Math.floorDiv(timestamp, millis) * millis;
+        }
+    }
+    
+    private final Path directory;
+    private final int segmentRows;
+    // Copy-on-write, replaced by the writer when it rolls to a new segment.
+    private volatile TimeSeriesSegment[] segments;
+    private final RollupFile minutes;
+    private final RollupFile hours;
+    private final ScheduledExecutorService rollupThread;
+    private int nextSegmentNumber;
+    private long lastTimestamp = Long.MIN_VALUE;
+    // Rollup state, only touched by the rollup thread (and by close once
+    // that thread has stopped).
+    private int cursorSegment;
+    private int cursorRow;
+    private final Accumulator minute = new Accumulator();
+    private final Accumulator hour = new Accumulator();
+    
+    public TimeSeriesStore(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_ROWS);
+    }
+    
+    // Reopens whatever the directory already holds and carries on from it.
+    public TimeSeriesStore(Path directory, int segmentRows) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentRows = segmentRows;
+        this.segments = openSegments();
+        this.minutes = new RollupFile(directory.resolve("minutes.rollup"));
+        this.hours = new RollupFile(directory.resolve("hours.rollup"));
+        if (segments.length > 0) {
+            TimeSeriesSegment tail = segments[segments.length - 1];
+            if (tail.size() > 0) {
+                lastTimestamp = tail.timestampAt(tail.size() - 1);
+            }
+        }
+        resumeRollups();
+        this.rollupThread = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "timeseries-rollup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rollupThread.scheduleWithFixedDelay(this::rollUp, ROLLUP_INTERVAL_MILLIS, ROLLUP_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public void update(float temperature, float humidity, float pressure) {
+        append(System.currentTimeMillis(), temperature, humidity, pressure);
+    }
+    
+    public synchronized void append(long timestampMillis, float temperature, float humidity, float pressure) {
+        long timestamp = Math.max(timestampMillis, lastTimestamp);
+        TimeSeriesSegment[] current = segments;
+        if (current.length == 0 || !current[current.length - 1].append(timestamp, temperature, humidity, pressure)) {
+            try {
+                if (current.length > 0) {
+                    current[current.length - 1].force();
+                }
+                TimeSeriesSegment segment = TimeSeriesSegment.create(
+                        directory.resolve(segmentName(nextSegmentNumber++)), segmentRows);
+                segment.append(timestamp, temperature, humidity, pressure);
+                TimeSeriesSegment[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = segment;
+                segments = updated;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start a new segment in " + directory, e);
+            }
+        }
+        lastTimestamp = timestamp;
+    }
+    
+    // Visits the rows with timestamps in [fromMillis, toMillis) in time
+    // order and returns how many there were.
+    public long scan(long fromMillis, long toMillis, TimeSeriesVisitor visitor) {
+        long visited = 0;
+        for (TimeSeriesSegment segment : segments) {
+            int rows = segment.size();
+            if (rows == 0 || segment.timestampAt(rows - 1) < fromMillis) {
+                continue;
+            }
+            if (segment.timestampAt(0) >= toMillis) {
+                break;
+            }
+            for (int row = segment.lowerBound(fromMillis, rows); row < rows; row++) {
+                long timestamp = segment.timestampAt(row);
+                if (timestamp >= toMillis) {
+                    return visited;
+                }
+                visitor.visit(timestamp, segment.temperatureAt(row), segment.humidityAt(row),
+                        segment.pressureAt(row));
+                visited++;
+            }
+        }
+        return visited;
+    }
+    
+    // Finished buckets starting in [fromMillis, toMillis).
+    public List<Rollup> rollups(Resolution resolution, long fromMillis, long toMillis) throws IOException {
+        return (resolution == Resolution.MINUTE ? minutes : hours).range(fromMillis, toMillis);
+    }
+    
+    public int getSegmentCount() {
+        return segments.length;
+    }
+    
+    public long size() {
+        long rows = 0;
+        for (TimeSeriesSegment segment : segments) {
+            rows += segment.size();
+        }
+        return rows;
+    }
+    
+    // Rolls up what has been written, then closes every file. Buckets that
+    // are still open are rebuilt from the raw rows when the store reopens.
+    @Override
+    public synchronized void close() throws IOException {
+        rollupThread.shutdown();
+        try {
+            rollupThread.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rollUp();
+        minutes.close();
+        hours.close();
+        for (TimeSeriesSegment segment : segments) {
+            segment.close();
+        }
+    }
+    
+    private TimeSeriesSegment[] openSegments() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : files) {
+                paths.add(path);
+            }
+        }
+        // Zero-padded numbers sort in creation order.
+        paths.sort(null);
+        TimeSeriesSegment[] opened = new TimeSeriesSegment[paths.size()];
+        for (int i = 0; i < opened.length; i++) {
+            opened[i] = TimeSeriesSegment.open(paths.get(i));
+        }
+        if (!paths.isEmpty()) {
+            String last = paths.get(paths.size() - 1).getFileName().toString();
+            nextSegmentNumber = 1 + Integer.parseInt(
+                    last.substring(SEGMENT_PREFIX.length(), last.length() - SEGMENT_SUFFIX.length()));
+        }
+        return opened;
+    }
+    
+    private static String segmentName(int number) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+    
+    // Picks up after the last persisted minute: the raw cursor goes to the
+    // first row after it, and minutes of the hour that was still open are
+    // read back into the hour accumulator.
+    private void resumeRollups() throws IOException {
+        Rollup lastMinute = minutes.last();
+        Rollup lastHour = hours.last();
+        long minuteEnd = lastMinute == null ? Long.MIN_VALUE : lastMinute.getStartMillis() + Resolution.MINUTE.millis;
+        long hourEnd = lastHour == null ? Long.MIN_VALUE : lastHour.getStartMillis() + Resolution.HOUR.millis;
+        for (Rollup finished : minutes.range(hourEnd, Long.MAX_VALUE)) {
+            addToHour(finished);
+        }
+        TimeSeriesSegment[] current = segments;
+        // With nothing newer, wait at the end of the last segment.
+        cursorSegment = Math.max(0, current.length - 1);
+        cursorRow = current.length == 0 ? 0 : current[cursorSegment].size();
+        for (int i = 0; i < current.length; i++) {
+            int rows = current[i].size();
+            if (rows > 0 && current[i].timestampAt(rows - 1) >= minuteEnd) {
+                cursorSegment = i;
+                cursorRow = current[i].lowerBound(minuteEnd, rows);
+                break;
+            }
+        }
+    }
+    
+    private void rollUp() {
+        try {
+            TimeSeriesSegment[] current = segments;
+            while (cursorSegment < current.length) {
+                TimeSeriesSegment segment = current[cursorSegment];
+                int rows = segment.size();
+                for (; cursorRow < rows; cursorRow++) {
+                    long timestamp = segment.timestampAt(cursorRow);
+                    long bucket = Resolution.MINUTE.bucketOf(timestamp);
+                    if (minute.count > 0 && bucket != minute.start) {
+                        Rollup finished = minute.toRollup();
+                        minutes.append(finished);
+                        minute.clear();
+                        addToHour(finished);
+                    }
+                    minute.add(bucket, segment.temperatureAt(cursorRow), segment.humidityAt(cursorRow),
+                            segment.pressureAt(cursorRow));
+                }
+                // Move on only once every row of a full segment is rolled up.
+                if (!segment.isFull() || cursorRow < segment.size()) {
+                    break;
+                }
+                cursorSegment++;
+                cursorRow = 0;
+            }
+        } catch (IOException e) {
+            System.err.println("Rollup of " + directory + " failed: " + e);
+        }
+    }
+    
+    private void addToHour(Rollup finishedMinute) throws IOException {
+        long bucket = Resolution.HOUR.bucketOf(finishedMinute.getStartMillis());
+        if (hour.count > 0 && bucket != hour.start) {
+            hours.append(hour.toRollup());
+            hour.clear();
+        }
+        hour.add(bucket, finishedMinute);
+    }
+    
+    private static final class Accumulator {
+        long start;
+        int count;
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        double temperatureSum;
+        double humiditySum;
+        double pressureSum;
+        
+        void add(long bucket, float temperature, float humidity, float pressure) {
+            start = bucket;
+            count++;
+            min = Math.min(min, temperature);
+            max = Math.max(max, temperature);
+            temperatureSum += temperature;
+            humiditySum += humidity;
+            pressureSum += pressure;
+        }
+        
+        void add(long bucket, Rollup rollup) {
+            start = bucket;
+            count += rollup.getCount();
+            min = Math.min(min, rollup.getMinTemperature());
+            max = Math.max(max, rollup.getMaxTemperature());
+            temperatureSum += rollup.getTemperatureSum();
+            humiditySum += rollup.getHumiditySum();
+            pressureSum += rollup.getPressureSum();
+        }
+        
+        Rollup toRollup() {
+            return new Rollup(start, count, min, max, temperatureSum, humiditySum, pressureSum);
+        }
+        
+        void clear() {
+            count = 0;
+            min = Float.POSITIVE_INFINITY;
+            max = Float.NEGATIVE_INFINITY;
+            temperatureSum = 0;
+            humiditySum = 0;
+            pressureSum = 0;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+// Receives the rows of a TimeSeriesStore range query one at a time, straight
+// from the mapped columns, so a scan allocates nothing per row.
+public interface TimeSeriesVisitor {
+    void visit(long timestampMillis, float temperature, float humidity, float pressure);
+}
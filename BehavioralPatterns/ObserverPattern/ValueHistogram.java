@@ -0,0 +1,49 @@
+// Fixed-width buckets over [lowest, highest); values outside land in the
+// edge buckets. Memory depends only on range and resolution, never on the
+// number of samples, and percentiles are accurate to one bucket.
+final class ValueHistogram {
+    private final double lowest;
+    private final double resolution;
+    private final int[] counts;
+    private long total;
+    
+    ValueHistogram(double lowest, double highest, double resolution) {
+        if (!(highest > lowest) || !(resolution > 0)) {
+            throw new IllegalArgumentException("Histogram needs lowest < highest and a positive resolution");
+        }
+        this.lowest = lowest;
+        this.resolution = resolution;
+        this.counts = new int[(int) Math.ceil((highest - lowest) / resolution)];
+    }
+    
+    int bucketOf(double value) {
+        int bucket = (int) Math.floor((value - lowest) / resolution);
+        return Math.max(0, Math.min(counts.length - 1, bucket));
+    }
+    
+    void add(int bucket, int count) {
+        counts[bucket] += count;
+        total += count;
+    }
+    
+    void remove(int bucket, int count) {
+        counts[bucket] -= count;
+        total -= count;
+    }
+    
+    // Midpoint of the bucket holding the requested rank.
+    double percentile(double percentile) {
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return lowest + (bucket + 0.5) * resolution;
+            }
+        }
+        return lowest + (counts.length - 0.5) * resolution;
+    }
+}
@@ -0,0 +1,56 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// Registers many short-lived displays that nothing else keeps, publishing a
+// reading after every few, once with strong and once with weak
+// subscriptions. Strong subscriptions keep every display reachable, so
+// the observer count and the cost of each notification keep growing; weak
+// ones are purged in batches as the collector clears them.
+public class WeakObserverLeakTest {
+    private static final int DISPLAYS = 50_000;
+    private static final int DISPLAYS_PER_READING = 10;
+    
+    public static void main(String[] args) {
+        PrintStream console = System.out;
+        // WeatherData announces every registration.
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            run(console, "strong", false);
+            run(console, "weak", true);
+        } finally {
+            System.setOut(console);
+        }
+    }
+    
+    private static void run(PrintStream console, String label, boolean weak) {
+        WeatherData weatherData = new WeatherData();
+        long updates = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < DISPLAYS; i++) {
+            ShortLivedDisplay display = new ShortLivedDisplay();
+            if (weak) {
+                weatherData.registerWeakObserver(display);
+            } else {
+                weatherData.registerObserver(display);
+            }
+            if (i % DISPLAYS_PER_READING == 0) {
+                weatherData.setMeasurements(20 + (i % 100) / 10.0f, 60, 1013);
+                updates += weatherData.getObserverCount();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        console.printf("%-6s %,d displays: %,d ms, %,d subscriptions left, %,d subscriptions notified%n",
+                label, DISPLAYS, elapsed / 1_000_000, weatherData.getObserverCount(), updates);
+    }
+    
+    private static class ShortLivedDisplay implements Observer {
+        // Stands in for the state a real display holds on to.
+        private final float[] history = new float[256];
+        private int next;
+        
+        @Override
+        public void update(float temperature, float humidity, float pressure) {
+            history[next++ % history.length] = temperature;
+        }
+    }
+}
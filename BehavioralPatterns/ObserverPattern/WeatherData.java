@@ -1,33 +1,218 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.ref.ReferenceQueue;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 public class WeatherData implements Subject {
-    private List<Observer> observers;
+    private static final int PURGE_INTERVAL = 1024;
+    
+    // Copy-on-write: registration publishes a new array, so notification
+    // iterates a stable snapshot without locking and never sees a
+    // half-applied change. Registration itself is serialized.
+    private volatile Subscription[] observers = new Subscription[0];
     private float temperature;
     private float humidity;
     private float pressure;
+    // When set, observers are updated on their own lanes and
+    // setMeasurements returns as soon as the reading is queued.
+    private final AsyncDispatcher dispatcher;
+    // When set, readings are written to the ring and each observer drains
+    // it in batches on its own consumer thread.
+    private final MeasurementRing ring;
+    // Weak subscriptions whose observers were collected. Drained in one
+    // batch on the next registration change, or every PURGE_INTERVAL
+    // notifications, rather than checked on every notification.
+    private final ReferenceQueue<Observer> collected = new ReferenceQueue<>();
+    private int notificationsSincePurge;
     
     public WeatherData() {
-        observers = new ArrayList<>();
+        this(null, null);
+    }
+    
+    public WeatherData(AsyncDispatcher dispatcher) {
+        this(dispatcher, null);
     }
     
+    public WeatherData(MeasurementRing ring) {
+        this(null, ring);
+    }
+    
+    private WeatherData(AsyncDispatcher dispatcher, MeasurementRing ring) {
+        this.dispatcher = dispatcher;
+        this.ring = ring;
+    }
+    
+    // The mode only matters with a dispatcher; synchronous observers are
+    // never behind, so they see every reading either way. The filter is
+    // applied here before anything is queued, so a filtered reading costs
+    // the observer nothing.
     @Override
-    public void registerObserver(Observer observer) {
-        observers.add(observer);
+    public void registerObserver(Observer observer, DeliveryMode mode, ChangeFilter filter) {
+        register(new Subscription(observer, mode, filter), observer);
+    }
+    
+    @Override
+    public void registerWeakObserver(Observer observer) {
+        registerWeakObserver(observer, DeliveryMode.LOSSLESS, ChangeFilter.ALWAYS);
+    }
+    
+    // The subscription lasts only as long as something else keeps the
+    // observer reachable; after that it is removed without removeObserver.
+    public void registerWeakObserver(Observer observer, DeliveryMode mode, ChangeFilter filter) {
+        register(new Subscription(observer, mode, filter, collected), observer);
+    }
+    
+    private synchronized void register(Subscription subscription, Observer observer) {
+        purgeCollected();
+        if (dispatcher != null) {
+            subscription.lane = dispatcher.register(subscription.delivery, subscription.mode);
+        }
+        if (ring != null) {
+            subscription.consumer = ring.subscribe(asBatchObserver(subscription));
+            subscription.consumer.start("ring-" + observer.getClass().getSimpleName());
+        }
+        Subscription[] updated = Arrays.copyOf(observers, observers.length + 1);
+        updated[observers.length] = subscription;
+        observers = updated;
         System.out.println("Observer registered: " + observer.getClass().getSimpleName());
     }
     
     @Override
-    public void removeObserver(Observer observer) {
-        observers.remove(observer);
+    public synchronized void removeObserver(Observer observer) {
+        purgeCollected();
+        for (Subscription subscription : observers) {
+            if (subscription.observer() == observer) {
+                remove(Collections.singleton(subscription));
+                break;
+            }
+        }
         System.out.println("Observer removed: " + observer.getClass().getSimpleName());
     }
     
+    // Polling is lock-free, so the notify path only takes the registration
+    // lock when there is something to remove.
+    private void purgeCollected() {
+        Subscription.WeakObserver first = (Subscription.WeakObserver) collected.poll();
+        if (first != null) {
+            purge(first);
+        }
+    }
+    
+    private synchronized void purge(Subscription.WeakObserver first) {
+        Set<Subscription> dead = Collections.newSetFromMap(new IdentityHashMap<>());
+        Subscription.WeakObserver reference = first;
+        do {
+            dead.add(reference.subscription);
+        } while ((reference = (Subscription.WeakObserver) collected.poll()) != null);
+        remove(dead);
+    }
+    
+    // One new array however many subscriptions go.
+    private void remove(Set<Subscription> removed) {
+        Subscription[] current = observers;
+        Subscription[] updated = new Subscription[current.length];
+        int kept = 0;
+        for (Subscription subscription : current) {
+            if (!removed.contains(subscription)) {
+                updated[kept++] = subscription;
+            }
+        }
+        observers = Arrays.copyOf(updated, kept);
+        for (Subscription subscription : removed) {
+            if (dispatcher != null) {
+                dispatcher.remove(subscription.delivery);
+            }
+            if (subscription.consumer != null) {
+                ring.unsubscribe(subscription.consumer);
+            }
+        }
+    }
+    
     @Override
     public void notifyObservers() {
-        for (Observer observer : observers) {
-            observer.update(temperature, humidity, pressure);
+        if (++notificationsSincePurge >= PURGE_INTERVAL) {
+            notificationsSincePurge = 0;
+            purgeCollected();
+        }
+        if (ring != null) {
+            ring.publish(temperature, humidity, pressure);
+            return;
+        }
+        if (dispatcher != null) {
+            Measurement measurement = new Measurement(temperature, humidity, pressure, System.nanoTime());
+            for (Subscription subscription : observers) {
+                if (subscription.accept(temperature, humidity, pressure)) {
+                    subscription.lane.offer(measurement);
+                }
+            }
+            return;
+        }
+        for (Subscription subscription : observers) {
+            if (subscription.accept(temperature, humidity, pressure)) {
+                subscription.delivery.update(temperature, humidity, pressure);
+            }
+        }
+    }
+    
+    // Includes weak subscriptions whose observers were collected but not
+    // yet purged.
+    public int getObserverCount() {
+        return observers.length;
+    }
+    
+    // Readings the observer's filter has held back so far.
+    public long getFilteredCount(Observer observer) {
+        for (Subscription subscription : observers) {
+            if (subscription.observer() == observer) {
+                return subscription.getFilteredCount();
+            }
+        }
+        return 0;
+    }
+    
+    // Waits for asynchronous observers to catch up; a no-op when
+    // observers are updated synchronously.
+    public void flush() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.flush();
+        }
+        if (ring != null) {
+            ring.awaitConsumers();
+        }
+    }
+    
+    // Unfiltered batch-aware observers read the ring directly; others get
+    // one update per reading that passes their filter, or only the newest
+    // reading of each batch if conflated. Each consumer thread evaluates
+    // its own subscription's filter, since readings reach it in batches.
+    private static BatchObserver asBatchObserver(Subscription subscription) {
+        Observer observer = subscription.delivery;
+        if (observer instanceof BatchObserver && subscription.mode == DeliveryMode.LOSSLESS
+                && subscription.filter == ChangeFilter.ALWAYS) {
+            return (BatchObserver) observer;
+        }
+        if (subscription.mode == DeliveryMode.CONFLATED) {
+            return batch -> {
+                int last = batch.size() - 1;
+                float temperature = batch.getTemperature(last);
+                float humidity = batch.getHumidity(last);
+                float pressure = batch.getPressure(last);
+                if (subscription.accept(temperature, humidity, pressure)) {
+                    observer.update(temperature, humidity, pressure);
+                }
+            };
         }
+        return batch -> {
+            for (int i = 0; i < batch.size(); i++) {
+                float temperature = batch.getTemperature(i);
+                float humidity = batch.getHumidity(i);
+                float pressure = batch.getPressure(i);
+                if (subscription.accept(temperature, humidity, pressure)) {
+                    observer.update(temperature, humidity, pressure);
+                }
+            }
+        };
     }
     
     public void measurementsChanged() {
@@ -0,0 +1,153 @@
+package StatePattern;
+
+import java.lang.management.ManagementFactory;
+
+// Hand-rolled throughput benchmark: random deposits and withdrawals over
+// many accounts. Accounts above 1,200 only withdraw, so balances keep
+// cycling through Gold, Overdrawn and back to Silver. Warm-up rounds let
+// the JIT settle before the measured ones; allocation is read from the
+// current thread's counter.
+//
+// Run with the argument "legacy" to measure the old design instead, where
+// every transition allocated a new state object. Each variant gets its own
+// JVM so neither sees the other's state classes at the call site.
+public class AccountBenchmark {
+    private static final int ACCOUNTS = 100_000;
+    private static final int OPERATIONS = 10_000_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        boolean legacy = args.length > 0 && args[0].equals("legacy");
+        System.out.println(legacy ? "Allocating state objects" : "Shared AccountTier states");
+        BankAccount[] accounts = new BankAccount[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = new BankAccount(false);
+            if (legacy) {
+                accounts[i].setState(new LegacySilver());
+            }
+        }
+        long seed = 42;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            seed = run(accounts, seed);
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        double best = 0;
+        double total = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            seed = run(accounts, seed);
+            long elapsed = System.nanoTime() - start;
+            long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            double opsPerSecond = OPERATIONS / (elapsed / 1e9);
+            best = Math.max(best, opsPerSecond);
+            total += opsPerSecond;
+            System.out.printf("round %d: %,.0f ops/s, %.2f bytes allocated/op%n",
+                    round + 1, opsPerSecond, (double) allocated / OPERATIONS);
+        }
+        System.out.printf("mean %,.0f ops/s, best %,.0f ops/s%n", total / MEASURED_ROUNDS, best);
+
+        int[] tiers = new int[AccountTier.values().length];
+        for (BankAccount account : accounts) {
+            tiers[tierOf(account.getState()).ordinal()]++;
+        }
+        for (AccountTier tier : AccountTier.values()) {
+            System.out.printf("%-9s %,d accounts%n", tier, tiers[tier.ordinal()]);
+        }
+    }
+
+    // xorshift keeps the operation stream identical between runs.
+    private static long run(BankAccount[] accounts, long seed) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            BankAccount account = accounts[(int) ((seed >>> 1) % ACCOUNTS)];
+            double amount = 50 + (seed >>> 40) % 1000;
+            if ((seed & 1) == 0 && account.getBalance() < 1200) {
+                account.deposit(amount);
+            } else {
+                account.withdraw(amount);
+            }
+        }
+        return seed;
+    }
+
+    private static AccountTier tierOf(AccountState state) {
+        if (state instanceof LegacyGold) {
+            return AccountTier.GOLD;
+        }
+        if (state instanceof LegacyOverdrawn) {
+            return AccountTier.OVERDRAWN;
+        }
+        if (state instanceof LegacySilver) {
+            return AccountTier.SILVER;
+        }
+        return (AccountTier) state;
+    }
+
+    // The state classes AccountTier replaced, with their printing removed so
+    // only the per-transition allocation differs.
+    private static class LegacySilver implements AccountState {
+        @Override
+        public void deposit(BankAccount account, double amount) {
+            account.setBalance(account.getBalance() + amount);
+            if (account.getBalance() > 1000) {
+                account.setState(new LegacyGold());
+            }
+        }
+
+        @Override
+        public void withdraw(BankAccount account, double amount) {
+            if (account.getBalance() >= amount) {
+                account.setBalance(account.getBalance() - amount);
+            } else {
+                account.setState(new LegacyOverdrawn());
+            }
+        }
+
+        @Override
+        public void checkBalance(BankAccount account) {
+        }
+    }
+
+    private static class LegacyGold implements AccountState {
+        @Override
+        public void deposit(BankAccount account, double amount) {
+            account.setBalance(account.getBalance() + amount);
+        }
+
+        @Override
+        public void withdraw(BankAccount account, double amount) {
+            if (account.getBalance() >= amount) {
+                account.setBalance(account.getBalance() - amount);
+            } else {
+                account.setState(new LegacyOverdrawn());
+            }
+        }
+
+        @Override
+        public void checkBalance(BankAccount account) {
+        }
+    }
+
+    private static class LegacyOverdrawn implements AccountState {
+        @Override
+        public void deposit(BankAccount account, double amount) {
+            account.setBalance(account.getBalance() + amount);
+            if (account.getBalance() > 0) {
+                account.setState(new LegacySilver());
+            }
+        }
+
+        @Override
+        public void withdraw(BankAccount account, double amount) {
+        }
+
+        @Override
+        public void checkBalance(BankAccount account) {
+        }
+    }
+}
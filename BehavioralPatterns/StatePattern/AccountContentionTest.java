@@ -0,0 +1,104 @@
+package StatePattern;
+
+import java.util.concurrent.CountDownLatch;
+
+// Several threads hammer one hot account with random deposits and
+// withdrawals, each keeping its own total of what it paid in and got out.
+// Afterwards the balance must equal paid in minus paid out. The
+// unsynchronized BankAccount is run the same way for comparison.
+public class AccountContentionTest {
+    private static final int OPERATIONS_PER_THREAD = 2_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%d threads x %,d operations on one account%n", threads, OPERATIONS_PER_THREAD);
+
+        AtomicBankAccount atomic = new AtomicBankAccount();
+        long[] atomicNet = new long[threads];
+        long elapsed = race(threads, thread -> {
+            long seed = 31 + thread;
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                seed = next(seed);
+                long cents = 1 + (seed >>> 1) % 10_000;
+                if ((seed & 1) == 0 || atomic.getBalanceCents() > 500_000) {
+                    if (atomic.withdraw(cents)) {
+                        atomicNet[thread] -= cents;
+                    }
+                } else {
+                    atomic.deposit(cents);
+                    atomicNet[thread] += cents;
+                }
+            }
+        });
+        report("AtomicBankAccount", elapsed, threads, sum(atomicNet), atomic.getBalanceCents());
+
+        BankAccount plain = new BankAccount(false);
+        long[] plainNet = new long[threads];
+        elapsed = race(threads, thread -> {
+            long seed = 31 + thread;
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                seed = next(seed);
+                long cents = 1 + (seed >>> 1) % 10_000;
+                if ((seed & 1) == 0 || plain.getBalance() > 5_000) {
+                    double before = plain.getBalance();
+                    plain.withdraw(cents / 100.0);
+                    // Best effort: a racing thread can make this guess wrong too.
+                    if (plain.getBalance() < before) {
+                        plainNet[thread] -= cents;
+                    }
+                } else {
+                    plain.deposit(cents / 100.0);
+                    plainNet[thread] += cents;
+                }
+            }
+        });
+        report("BankAccount", elapsed, threads, sum(plainNet), Math.round(plain.getBalance() * 100));
+    }
+
+    private static void report(String label, long elapsedNanos, int threads, long expected, long actual) {
+        System.out.printf("%-18s %,.0f ops/s, expected balance %,d cents, actual %,d cents (%s)%n",
+                label, threads * (double) OPERATIONS_PER_THREAD / (elapsedNanos / 1e9), expected, actual,
+                expected == actual ? "consistent" : "off by " + (actual - expected) + " cents");
+    }
+
+    private static long race(int threads, Worker worker) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                worker.run(thread);
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        return System.nanoTime() - begin;
+    }
+
+    private static long next(long seed) {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        return seed ^ seed << 17;
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private interface Worker {
+        void run(int thread);
+    }
+}
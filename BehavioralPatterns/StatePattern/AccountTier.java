@@ -0,0 +1,102 @@
+package StatePattern;
+
+// The account states as shared constants. A state holds no per-account
+// data, so one instance of each serves every account and a transition is
+// just a field write. The constants have no bodies of their own: they all
+// share this one class and differ only in the rows of the transition
+// table, so every call through AccountState sees a single receiver type
+// and the JIT can inline it.
+public enum AccountTier implements AccountState {
+    SILVER("Silver", "Deposited ", "Withdrew "),
+    GOLD("Gold", "Gold deposit: ", "Gold withdraw: "),
+    // A null withdraw label means withdrawals are refused.
+    OVERDRAWN("Overdrawn", "Deposited ", null);
+
+    static {
+        // Deposits move the account once the new balance is above the limit.
+        SILVER.onDepositAbove(1000, GOLD, "Upgraded to Gold Account!");
+        OVERDRAWN.onDepositAbove(0, SILVER, "Account back to Silver!");
+        // Withdrawals larger than the balance are refused and overdraw it.
+        SILVER.onInsufficientFunds(OVERDRAWN);
+        GOLD.onInsufficientFunds(OVERDRAWN);
+    }
+
+    private final String name;
+    private final String depositLabel;
+    private final String withdrawLabel;
+    // Filled in by the static table above; fixed once the class is loaded.
+    private double depositLimit = Double.POSITIVE_INFINITY;
+    private long depositLimitCents = Long.MAX_VALUE;
+    private AccountTier depositTarget;
+    private String depositMessage;
+    private AccountTier overdrawTarget;
+
+    AccountTier(String name, String depositLabel, String withdrawLabel) {
+        this.name = name;
+        this.depositLabel = depositLabel;
+        this.withdrawLabel = withdrawLabel;
+    }
+
+    private void onDepositAbove(double limit, AccountTier target, String message) {
+        depositLimit = limit;
+        depositLimitCents = Math.round(limit * 100);
+        depositTarget = target;
+        depositMessage = message;
+    }
+
+    private void onInsufficientFunds(AccountTier target) {
+        overdrawTarget = target;
+    }
+
+    // The same table as pure functions of a balance in cents, for accounts
+    // that must compute a whole transition before committing it.
+    AccountTier afterDeposit(long balanceCents) {
+        return balanceCents > depositLimitCents ? depositTarget : this;
+    }
+
+    boolean refusesWithdrawals() {
+        return withdrawLabel == null;
+    }
+
+    AccountTier afterInsufficientFunds() {
+        return overdrawTarget;
+    }
+
+    @Override
+    public void deposit(BankAccount account, double amount) {
+        account.setBalance(account.getBalance() + amount);
+        if (account.isVerbose()) {
+            System.out.println(depositLabel + amount + ", balance: " + account.getBalance());
+        }
+        if (account.getBalance() > depositLimit) {
+            account.setState(depositTarget);
+            if (account.isVerbose()) {
+                System.out.println(depositMessage);
+            }
+        }
+    }
+
+    @Override
+    public void withdraw(BankAccount account, double amount) {
+        if (withdrawLabel == null) {
+            if (account.isVerbose()) {
+                System.out.println("Cannot withdraw, account is overdrawn!");
+            }
+        } else if (account.getBalance() >= amount) {
+            account.setBalance(account.getBalance() - amount);
+            if (account.isVerbose()) {
+                System.out.println(withdrawLabel + amount + ", balance: " + account.getBalance());
+            }
+        } else {
+            account.setState(overdrawTarget);
+            if (account.isVerbose()) {
+                System.out.println("Insufficient funds! Account is Overdrawn.");
+            }
+        }
+    }
+
+    @Override
+    public void checkBalance(BankAccount account) {
+        System.out.println(name + " Account balance: " + account.getBalance());
+    }
+}
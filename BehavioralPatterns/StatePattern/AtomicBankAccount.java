@@ -0,0 +1,103 @@
+package StatePattern;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Thread-safe account without locks. The balance is kept in cents and
+// packed together with the tier into one long, [balance cents][tier, 2 bits],
+// so a transaction and the transition it causes commit in a single CAS:
+// no thread can see a Gold balance on a Silver account, and concurrent
+// transactions never lose each other's updates. The rules come from the
+// same AccountTier table as BankAccount. Balances must stay within
+// +/-2^61 cents; a deposit that would leave that range is rejected before
+// anything is committed.
+public class AtomicBankAccount {
+    private static final int TIER_BITS = 2;
+    private static final long TIER_MASK = (1L << TIER_BITS) - 1;
+    // Shared with LedgerEngine so both reject the same deposits.
+    static final long MAX_BALANCE = Long.MAX_VALUE >> TIER_BITS;
+    private static final AccountTier[] TIERS = AccountTier.values();
+
+    private final AtomicLong word;
+
+    public AtomicBankAccount() {
+        this.word = new AtomicLong(pack(0, AccountTier.SILVER));
+    }
+
+    public void deposit(long cents) {
+        checkAmount(cents);
+        while (true) {
+            long current = word.get();
+            long balance = checkBalance(Math.addExact(balanceOf(current), cents));
+            long next = pack(balance, tierOf(current).afterDeposit(balance));
+            if (word.compareAndSet(current, next)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // Returns whether the money was paid out. An insufficient withdrawal
+    // leaves the balance alone and moves the account to Overdrawn.
+    public boolean withdraw(long cents) {
+        checkAmount(cents);
+        while (true) {
+            long current = word.get();
+            AccountTier tier = tierOf(current);
+            if (tier.refusesWithdrawals()) {
+                return false;
+            }
+            long balance = balanceOf(current);
+            boolean covered = balance >= cents;
+            long next = covered ? pack(balance - cents, tier) : pack(balance, tier.afterInsufficientFunds());
+            if (word.compareAndSet(current, next)) {
+                return covered;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public long getBalanceCents() {
+        return balanceOf(word.get());
+    }
+
+    public AccountTier getTier() {
+        return tierOf(word.get());
+    }
+
+    // Balance and tier from the same instant.
+    @Override
+    public String toString() {
+        long current = word.get();
+        long balance = balanceOf(current);
+        return tierOf(current) + " " + (balance < 0 ? "-" : "") + Math.abs(balance) / 100
+                + "." + String.format("%02d", Math.abs(balance) % 100);
+    }
+
+    private static long pack(long balanceCents, AccountTier tier) {
+        return balanceCents << TIER_BITS | tier.ordinal();
+    }
+
+    private static long balanceOf(long word) {
+        return word >> TIER_BITS;
+    }
+
+    private static AccountTier tierOf(long word) {
+        return TIERS[(int) (word & TIER_MASK)];
+    }
+
+    // The shift in pack would silently drop the top bits of anything larger.
+    // Withdrawals only ever pay out what is there, so only deposits can
+    // get here.
+    private static long checkBalance(long balanceCents) {
+        if (balanceCents > MAX_BALANCE) {
+            throw new ArithmeticException("Balance would exceed " + MAX_BALANCE + " cents: " + balanceCents);
+        }
+        return balanceCents;
+    }
+
+    private static void checkAmount(long cents) {
+        if (cents <= 0) {
+            throw new IllegalArgumentException("Amount must be a positive number of cents: " + cents);
+        }
+    }
+}
@@ -3,10 +3,18 @@ package StatePattern;
 public class BankAccount {
     private AccountState state;
     private double balance;
+    // Off for bulk processing, where printing every transaction would
+    // cost far more than the transaction itself.
+    private final boolean verbose;
 
     public BankAccount() {
-        this.state = new SilverAccount(); // default state
+        this(true);
+    }
+
+    public BankAccount(boolean verbose) {
+        this.state = AccountTier.SILVER; // default state
         this.balance = 0;
+        this.verbose = verbose;
     }
 
     public void setState(AccountState state) {
@@ -32,5 +40,13 @@ public class BankAccount {
     public void setBalance(double balance) {
         this.balance = balance;
     }
+
+    public AccountState getState() {
+        return state;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
 }
 
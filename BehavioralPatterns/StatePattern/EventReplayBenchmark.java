@@ -0,0 +1,88 @@
+package StatePattern;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Writes a long history to an EventSourcedAccount, then times recovering
+// it twice: replaying the whole log with no snapshot, and replaying only
+// the tail after a snapshot. Both must reproduce the live balance and tier.
+public class EventReplayBenchmark {
+    private static final int TRANSACTIONS = 10_000_000;
+    private static final int TAIL_TRANSACTIONS = 100_000;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("account-events");
+        try {
+            long expectedBalance;
+            AccountTier expectedTier;
+            long events;
+            long seed = 11;
+            try (EventSourcedAccount account = new EventSourcedAccount(directory, Integer.MAX_VALUE)) {
+                long start = System.nanoTime();
+                seed = transact(account, seed, TRANSACTIONS);
+                long elapsed = System.nanoTime() - start;
+                events = account.getEventCount();
+                System.out.printf("Wrote %,d events for %,d transactions in %,d ms (%,.0f events/s)%n",
+                        events, TRANSACTIONS, elapsed / 1_000_000, events / (elapsed / 1e9));
+                expectedBalance = account.getBalanceCents();
+                expectedTier = account.getTier();
+            }
+
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            // The first open also warms up the replay loop.
+            new EventSourcedAccount(directory, Integer.MAX_VALUE).close();
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            try (EventSourcedAccount account = new EventSourcedAccount(directory, Integer.MAX_VALUE)) {
+                long elapsed = System.nanoTime() - start;
+                long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                System.out.printf("Full replay of %,d events: %,d ms (%,.0f events/s), %,d bytes allocated, %s%n",
+                        account.getReplayedOnOpen(), elapsed / 1_000_000,
+                        account.getReplayedOnOpen() / (elapsed / 1e9), allocated,
+                        verdict(account, expectedBalance, expectedTier));
+
+                account.snapshot();
+                seed = transact(account, seed, TAIL_TRANSACTIONS);
+                expectedBalance = account.getBalanceCents();
+                expectedTier = account.getTier();
+            }
+
+            start = System.nanoTime();
+            try (EventSourcedAccount account = new EventSourcedAccount(directory, Integer.MAX_VALUE)) {
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("Snapshot + tail of %,d events: %,d us, %s%n",
+                        account.getReplayedOnOpen(), elapsed / 1000, verdict(account, expectedBalance, expectedTier));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // Accounts above $1,200 only withdraw, so the tier keeps changing.
+    private static long transact(EventSourcedAccount account, long seed, int transactions) throws IOException {
+        for (int i = 0; i < transactions; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            long cents = 5_000 + (seed >>> 40) % 100_000;
+            if ((seed & 1) == 0 && account.getBalanceCents() < 120_000) {
+                account.deposit(cents);
+            } else {
+                account.withdraw(cents);
+            }
+        }
+        return seed;
+    }
+
+    private static String verdict(EventSourcedAccount account, long balance, AccountTier tier) {
+        return account.getBalanceCents() == balance && account.getTier() == tier
+                ? "recovered " + tier + " " + balance + " cents" : "MISMATCH";
+    }
+}
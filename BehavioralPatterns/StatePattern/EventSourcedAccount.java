@@ -0,0 +1,237 @@
+package StatePattern;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Account whose history is its source of truth. Every deposit, withdrawal,
+// refused withdrawal and tier change is appended to events.log as a fixed
+// 16-byte record, [byte type][byte from tier][byte to tier][5 spare]
+// [long cents], and every snapshotInterval events the balance and tier are
+// written to snapshots.log as [long event count][long cents][long tier].
+// Opening the account loads the last snapshot and replays only the events
+// after it, reading the log sequentially through read-only mapped windows
+// into two local variables, so replay allocates nothing per event.
+//
+// Single-threaded, like BankAccount; the rules are the AccountTier table.
+public class EventSourcedAccount implements AutoCloseable {
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1 << 20;
+
+    static final byte DEPOSITED = 1;
+    static final byte WITHDREW = 2;
+    static final byte WITHDRAWAL_REFUSED = 3;
+    static final byte TIER_CHANGED = 4;
+
+    private static final int EVENT_BYTES = 16;
+    private static final int SNAPSHOT_BYTES = 24;
+    // Replay maps at most this much of the log at a time.
+    private static final long WINDOW_BYTES = 1L << 30;
+    private static final AccountTier[] TIERS = AccountTier.values();
+
+    private final FileChannel events;
+    private final FileChannel snapshots;
+    private final ByteBuffer pending = ByteBuffer.allocateDirect(64 * 1024);
+    private final int snapshotInterval;
+    private long balanceCents;
+    private AccountTier tier = AccountTier.SILVER;
+    // Events in the log, including those still in the write buffer.
+    private long eventCount;
+    private long lastSnapshot;
+    private long replayedOnOpen;
+
+    public EventSourcedAccount(Path directory) throws IOException {
+        this(directory, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    // Recovers whatever the directory holds; an empty directory is a new
+    // Silver account with nothing in it.
+    public EventSourcedAccount(Path directory, int snapshotInterval) throws IOException {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least 1");
+        }
+        this.snapshotInterval = snapshotInterval;
+        Files.createDirectories(directory);
+        this.events = FileChannel.open(directory.resolve("events.log"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.snapshots = FileChannel.open(directory.resolve("snapshots.log"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // A record cut short by a crash is dropped.
+        eventCount = events.size() / EVENT_BYTES;
+        events.truncate(eventCount * EVENT_BYTES);
+        snapshots.truncate(snapshots.size() / SNAPSHOT_BYTES * SNAPSHOT_BYTES);
+        recover();
+    }
+
+    public void deposit(long cents) throws IOException {
+        checkAmount(cents);
+        balanceCents += cents;
+        append(DEPOSITED, tier, tier, cents);
+        moveTo(tier.afterDeposit(balanceCents));
+        afterTransaction();
+    }
+
+    // Same outcomes as AtomicBankAccount.withdraw.
+    public boolean withdraw(long cents) throws IOException {
+        checkAmount(cents);
+        boolean paid = false;
+        if (tier.refusesWithdrawals()) {
+            append(WITHDRAWAL_REFUSED, tier, tier, cents);
+        } else if (balanceCents >= cents) {
+            balanceCents -= cents;
+            append(WITHDREW, tier, tier, cents);
+            paid = true;
+        } else {
+            append(WITHDRAWAL_REFUSED, tier, tier, cents);
+            moveTo(tier.afterInsufficientFunds());
+        }
+        afterTransaction();
+        return paid;
+    }
+
+    public long getBalanceCents() {
+        return balanceCents;
+    }
+
+    public AccountTier getTier() {
+        return tier;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    // Events replayed on top of the snapshot when the account was opened.
+    public long getReplayedOnOpen() {
+        return replayedOnOpen;
+    }
+
+    // Writes buffered events to the file, and with force also to disk.
+    public void flush(boolean force) throws IOException {
+        pending.flip();
+        long position = (eventCount - pending.remaining() / EVENT_BYTES) * EVENT_BYTES;
+        while (pending.hasRemaining()) {
+            position += events.write(pending, position);
+        }
+        pending.clear();
+        if (force) {
+            events.force(false);
+        }
+    }
+
+    // A snapshot only ever describes events already on disk, so a crash
+    // cannot leave one that is ahead of the log.
+    public void snapshot() throws IOException {
+        flush(true);
+        ByteBuffer record = ByteBuffer.allocate(SNAPSHOT_BYTES);
+        record.putLong(eventCount).putLong(balanceCents).putLong(tier.ordinal()).flip();
+        long position = snapshots.size();
+        while (record.hasRemaining()) {
+            position += snapshots.write(record, position);
+        }
+        lastSnapshot = eventCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush(true);
+        snapshots.force(false);
+        events.close();
+        snapshots.close();
+    }
+
+    private void moveTo(AccountTier next) throws IOException {
+        if (next != tier) {
+            append(TIER_CHANGED, tier, next, balanceCents);
+            tier = next;
+        }
+    }
+
+    private void afterTransaction() throws IOException {
+        if (eventCount - lastSnapshot >= snapshotInterval) {
+            snapshot();
+        }
+    }
+
+    private void append(byte type, AccountTier from, AccountTier to, long cents) throws IOException {
+        if (pending.remaining() < EVENT_BYTES) {
+            flush(false);
+        }
+        pending.put(type).put((byte) from.ordinal()).put((byte) to.ordinal())
+                .put((byte) 0).putInt(0).putLong(cents);
+        eventCount++;
+    }
+
+    // Uses the newest snapshot the log still covers: a log cut short, or
+    // restored from an older copy, can leave snapshots ahead of it. Those
+    // are deleted, since once new events are appended the log would cover
+    // them again and the next open would start from a balance that never
+    // happened.
+    private void recover() throws IOException {
+        long from = 0;
+        long kept = 0;
+        ByteBuffer record = ByteBuffer.allocate(SNAPSHOT_BYTES);
+        for (long index = snapshots.size() / SNAPSHOT_BYTES - 1; index >= 0; index--) {
+            record.clear();
+            long position = index * SNAPSHOT_BYTES;
+            while (record.hasRemaining()) {
+                position += snapshots.read(record, position);
+            }
+            record.flip();
+            long covered = record.getLong();
+            if (covered <= eventCount) {
+                from = covered;
+                balanceCents = record.getLong();
+                tier = TIERS[(int) record.getLong()];
+                kept = (index + 1) * SNAPSHOT_BYTES;
+                break;
+            }
+        }
+        if (kept < snapshots.size()) {
+            snapshots.truncate(kept);
+            snapshots.force(false);
+        }
+        replay(from);
+        replayedOnOpen = eventCount - from;
+        lastSnapshot = from;
+    }
+
+    private void replay(long fromEvent) throws IOException {
+        long balance = balanceCents;
+        int tierOrdinal = tier.ordinal();
+        long end = eventCount * EVENT_BYTES;
+        for (long start = fromEvent * EVENT_BYTES; start < end; start += WINDOW_BYTES) {
+            long length = Math.min(WINDOW_BYTES, end - start);
+            MappedByteBuffer window = events.map(FileChannel.MapMode.READ_ONLY, start, length);
+            for (int offset = 0; offset < length; offset += EVENT_BYTES) {
+                long cents = window.getLong(offset + 8);
+                switch (window.get(offset)) {
+                    case DEPOSITED:
+                        balance += cents;
+                        break;
+                    case WITHDREW:
+                        balance -= cents;
+                        break;
+                    case WITHDRAWAL_REFUSED:
+                        break;
+                    case TIER_CHANGED:
+                        tierOrdinal = window.get(offset + 2);
+                        break;
+                    default:
+                        throw new IOException("Corrupt event at offset " + (start + offset));
+                }
+            }
+        }
+        balanceCents = balance;
+        tier = TIERS[tierOrdinal];
+    }
+
+    private static void checkAmount(long cents) {
+        if (cents <= 0) {
+            throw new IllegalArgumentException("Amount must be a positive number of cents: " + cents);
+        }
+    }
+}
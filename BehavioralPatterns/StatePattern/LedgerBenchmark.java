@@ -0,0 +1,77 @@
+package StatePattern;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Settles batches of random transactions over a million accounts with 1, 2,
+// 4, ... partitions, up to at least the core count, and checks the result
+// against applying the same transactions one by one to AtomicBankAccounts.
+public class LedgerBenchmark {
+    private static final int ACCOUNTS = 1_000_000;
+    private static final int TRANSACTIONS = 10_000_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        TransactionBatch batch = new TransactionBatch(TRANSACTIONS);
+        long seed = 7;
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            batch.add((int) ((seed >>> 1) % ACCOUNTS), (seed & 1) == 0 ? TransactionBatch.DEPOSIT
+                    : TransactionBatch.WITHDRAW, 1 + (seed >>> 32) % 100_000);
+        }
+
+        AtomicBankAccount[] reference = new AtomicBankAccount[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            reference[i] = new AtomicBankAccount();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            AtomicBankAccount account = reference[batch.getAccountId(i)];
+            if (batch.getOp(i) == TransactionBatch.DEPOSIT) {
+                account.deposit(batch.getAmount(i));
+            } else {
+                account.withdraw(batch.getAmount(i));
+            }
+        }
+        System.out.printf("%,d transactions over %,d accounts%n", TRANSACTIONS, ACCOUNTS);
+        System.out.printf("one by one (AtomicBankAccount): %,.0f tx/s%n",
+                TRANSACTIONS / ((System.nanoTime() - start) / 1e9));
+
+        int maxPartitions = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int partitions = 1; partitions <= maxPartitions; partitions *= 2) {
+            run(batch, partitions, reference);
+        }
+    }
+
+    private static void run(TransactionBatch batch, int partitions, AtomicBankAccount[] reference) {
+        double best = 0;
+        LongAdder tierChanges = new LongAdder();
+        // Every round starts from fresh accounts; the first one warms up.
+        for (int round = 0; round <= ROUNDS; round++) {
+            try (LedgerEngine engine = new LedgerEngine(ACCOUNTS, partitions)) {
+                tierChanges.reset();
+                long start = System.nanoTime();
+                engine.settle(batch, (accountId, from, to, balanceCents, index) -> tierChanges.increment());
+                long elapsed = System.nanoTime() - start;
+                if (round > 0) {
+                    best = Math.max(best, TRANSACTIONS / (elapsed / 1e9));
+                }
+                if (round == ROUNDS) {
+                    System.out.printf("%2d partitions: %,.0f tx/s, %,d tier changes, %s%n", partitions, best,
+                            tierChanges.sum(), matches(engine, reference) ? "matches one by one" : "MISMATCH");
+                }
+            }
+        }
+    }
+
+    private static boolean matches(LedgerEngine engine, AtomicBankAccount[] reference) {
+        for (int i = 0; i < reference.length; i++) {
+            if (engine.getBalanceCents(i) != reference[i].getBalanceCents()
+                    || engine.getTier(i) != reference[i].getTier()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
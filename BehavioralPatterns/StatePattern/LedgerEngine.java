@@ -0,0 +1,210 @@
+package StatePattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Settles batches of transactions for a fixed set of accounts with the
+// same Silver/Gold/Overdrawn rules as BankAccount. Accounts are split into
+// partitions by id, and each partition's balances and tiers are plain
+// arrays that only its own task ever writes, so applying a transaction
+// needs no locks or atomics. A batch is settled in three parallel passes:
+//
+// 1. each worker counts how many transactions in its slice of the batch
+//    go to each partition
+// 2. prefix sums of those counts give every (slice, partition) pair its own
+//    range, and each worker scatters its slice's indices into them, so each
+//    partition's transactions end up together and still in batch order
+// 3. each partition applies its transactions in that order
+//
+// Outcomes go back into the batch by index, and tier changes reach the
+// listener in batch order for each account.
+public class LedgerEngine implements AutoCloseable {
+    private static final AccountTier[] TIERS = AccountTier.values();
+
+    private final int accounts;
+    private final int partitions;
+    private final long[][] balances;
+    private final byte[][] tiers;
+    private final ExecutorService workers;
+    // Reused from batch to batch.
+    private int[] order = new int[0];
+    private final int[][] counts;
+    private final int[] partitionStarts;
+
+    public LedgerEngine(int accounts) {
+        this(accounts, Runtime.getRuntime().availableProcessors());
+    }
+
+    public LedgerEngine(int accounts, int partitions) {
+        if (accounts < 1 || partitions < 1) {
+            throw new IllegalArgumentException("Ledger needs at least one account and one partition");
+        }
+        this.accounts = accounts;
+        this.partitions = partitions;
+        this.balances = new long[partitions][];
+        this.tiers = new byte[partitions][];
+        for (int p = 0; p < partitions; p++) {
+            int owned = (accounts - p + partitions - 1) / partitions;
+            balances[p] = new long[owned];
+            tiers[p] = new byte[owned];
+            Arrays.fill(tiers[p], (byte) AccountTier.SILVER.ordinal());
+        }
+        this.counts = new int[partitions][partitions];
+        this.partitionStarts = new int[partitions + 1];
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(partitions, task -> {
+            Thread thread = new Thread(task, "ledger-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Callers on different threads are serialized, since every batch reuses
+    // the same scratch arrays. A listener that throws stops only its own
+    // partition: the others still settle their transactions, so the batch
+    // is left half-applied and the first exception is rethrown here.
+    public synchronized void settle(TransactionBatch batch, TierChangeListener listener) {
+        int size = batch.size;
+        if (order.length < size) {
+            order = new int[size];
+        }
+        int slice = (size + partitions - 1) / partitions;
+
+        runAll(worker -> () -> {
+            int[] mine = counts[worker];
+            Arrays.fill(mine, 0);
+            int end = Math.min(size, (worker + 1) * slice);
+            for (int i = worker * slice; i < end; i++) {
+                int accountId = batch.accountIds[i];
+                if (accountId < 0 || accountId >= accounts) {
+                    throw new IllegalArgumentException("Unknown account " + accountId + " at index " + i);
+                }
+                mine[accountId % partitions]++;
+            }
+            return null;
+        });
+
+        // counts[slice][partition] becomes the first index of that pair's range.
+        int next = 0;
+        for (int p = 0; p < partitions; p++) {
+            partitionStarts[p] = next;
+            for (int s = 0; s < partitions; s++) {
+                int count = counts[s][p];
+                counts[s][p] = next;
+                next += count;
+            }
+        }
+        partitionStarts[partitions] = next;
+
+        runAll(worker -> () -> {
+            int[] cursor = counts[worker];
+            int end = Math.min(size, (worker + 1) * slice);
+            for (int i = worker * slice; i < end; i++) {
+                order[cursor[batch.accountIds[i] % partitions]++] = i;
+            }
+            return null;
+        });
+
+        runAll(partition -> () -> {
+            apply(partition, batch, listener);
+            return null;
+        });
+    }
+
+    public void settle(TransactionBatch batch) {
+        settle(batch, null);
+    }
+
+    // Only consistent between batches.
+    public long getBalanceCents(int accountId) {
+        return balances[accountId % partitions][accountId / partitions];
+    }
+
+    public AccountTier getTier(int accountId) {
+        return TIERS[tiers[accountId % partitions][accountId / partitions]];
+    }
+
+    public int getAccountCount() {
+        return accounts;
+    }
+
+    public int getPartitionCount() {
+        return partitions;
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    private void apply(int partition, TransactionBatch batch, TierChangeListener listener) {
+        long[] balance = balances[partition];
+        byte[] tier = tiers[partition];
+        int[] accountIds = batch.accountIds;
+        byte[] ops = batch.ops;
+        long[] amounts = batch.amounts;
+        byte[] outcomes = batch.outcomes;
+        for (int k = partitionStarts[partition]; k < partitionStarts[partition + 1]; k++) {
+            int i = order[k];
+            int local = accountIds[i] / partitions;
+            AccountTier current = TIERS[tier[local]];
+            AccountTier updated = current;
+            // Ledger balances never go below zero, so the subtraction
+            // cannot overflow.
+            if (ops[i] == TransactionBatch.DEPOSIT && amounts[i] > AtomicBankAccount.MAX_BALANCE - balance[local]) {
+                outcomes[i] = TransactionBatch.BALANCE_LIMIT;
+            } else if (ops[i] == TransactionBatch.DEPOSIT) {
+                balance[local] += amounts[i];
+                updated = current.afterDeposit(balance[local]);
+                outcomes[i] = TransactionBatch.APPLIED;
+            } else if (current.refusesWithdrawals()) {
+                outcomes[i] = TransactionBatch.REFUSED;
+            } else if (balance[local] >= amounts[i]) {
+                balance[local] -= amounts[i];
+                outcomes[i] = TransactionBatch.APPLIED;
+            } else {
+                updated = current.afterInsufficientFunds();
+                outcomes[i] = TransactionBatch.INSUFFICIENT_FUNDS;
+            }
+            if (updated != current) {
+                tier[local] = (byte) updated.ordinal();
+                if (listener != null) {
+                    listener.onTierChange(accountIds[i], current, updated, balance[local], i);
+                }
+            }
+        }
+    }
+
+    // Runs one task per worker index and waits for all of them; the futures
+    // order each pass's writes before the next pass's reads.
+    private void runAll(TaskFactory factory) {
+        List<Callable<Void>> tasks = new ArrayList<>(partitions);
+        for (int worker = 0; worker < partitions; worker++) {
+            tasks.add(factory.create(worker));
+        }
+        try {
+            for (Future<Void> result : workers.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while settling a batch", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Settling a batch failed", e.getCause());
+        }
+    }
+
+    private interface TaskFactory {
+        Callable<Void> create(int worker);
+    }
+}
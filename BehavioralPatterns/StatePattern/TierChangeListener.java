@@ -0,0 +1,9 @@
+package StatePattern;
+
+// Told about every tier change LedgerEngine makes. It is called on the
+// worker that owns the account, so calls for one account arrive in batch
+// order, while calls for accounts in different partitions may be concurrent.
+// Throwing does not roll anything back; see LedgerEngine.settle.
+public interface TierChangeListener {
+    void onTierChange(int accountId, AccountTier from, AccountTier to, long balanceCents, int transactionIndex);
+}
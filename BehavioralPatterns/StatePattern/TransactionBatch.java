@@ -0,0 +1,78 @@
+package StatePattern;
+
+import java.util.Arrays;
+
+// A batch of transactions for LedgerEngine, stored as parallel columns
+// rather than one object per transaction. settle() fills in the outcome
+// column; clear() lets the same arrays carry the next batch.
+public class TransactionBatch {
+    public static final byte DEPOSIT = 0;
+    public static final byte WITHDRAW = 1;
+
+    public static final byte APPLIED = 0;
+    // Withdrawal from an account that was already overdrawn.
+    public static final byte REFUSED = 1;
+    // Withdrawal larger than the balance; the account is now overdrawn.
+    public static final byte INSUFFICIENT_FUNDS = 2;
+    // Deposit that would take the balance past the largest balance
+    // AtomicBankAccount can hold; nothing changed.
+    public static final byte BALANCE_LIMIT = 3;
+
+    int[] accountIds;
+    byte[] ops;
+    long[] amounts;
+    byte[] outcomes;
+    int size;
+
+    public TransactionBatch(int initialCapacity) {
+        accountIds = new int[initialCapacity];
+        ops = new byte[initialCapacity];
+        amounts = new long[initialCapacity];
+        outcomes = new byte[initialCapacity];
+    }
+
+    public void add(int accountId, byte op, long cents) {
+        if (op != DEPOSIT && op != WITHDRAW) {
+            throw new IllegalArgumentException("Unknown operation: " + op);
+        }
+        if (cents <= 0) {
+            throw new IllegalArgumentException("Amount must be a positive number of cents: " + cents);
+        }
+        if (size == accountIds.length) {
+            int capacity = Math.max(16, size * 2);
+            accountIds = Arrays.copyOf(accountIds, capacity);
+            ops = Arrays.copyOf(ops, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            outcomes = Arrays.copyOf(outcomes, capacity);
+        }
+        accountIds[size] = accountId;
+        ops[size] = op;
+        amounts[size] = cents;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getAccountId(int index) {
+        return accountIds[index];
+    }
+
+    public byte getOp(int index) {
+        return ops[index];
+    }
+
+    public long getAmount(int index) {
+        return amounts[index];
+    }
+
+    // Only meaningful once the batch has been settled.
+    public byte getOutcome(int index) {
+        return outcomes[index];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}